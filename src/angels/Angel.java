@@ -1,16 +1,91 @@
 /**
  * This class allows for the representation of an angel. An angel has various
  * attributes that allow for identification and needs of an angel.
- * 
+ *
+ * Each attribute is kept in a typed field rather than a map of attribute
+ * names to values, as every display and the local copies of the angels hold
+ * thousands of angels at once. The status and gender are enums, the age is an
+ * int, and the sizes, which are shared by many angels, are interned. Angels
+ * read from the database are built directly by the AngelDeserializer.
+ *
  * @author Nicholas Kunzler
  */
 package angels;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import com.arangodb.entity.BaseDocument;
 
 public class Angel implements Comparable<Angel> {
 
-	private BaseDocument baseDocument = new BaseDocument();
+	// Attributes derived from the ID, ex: 123B has the number 123 and the
+	// suffix B. Stored with the angel so the database can sort IDs naturally
+	// and 2A comes before 10A.
+	public static final String ID_NUMBER = "ID_NUMBER";
+	public static final String ID_SUFFIX = "ID_SUFFIX";
+
+	// Time, in milliseconds, the angel was last written. Set on every write
+	// so stations can fetch only the angels changed since their last fetch.
+	public static final String UPDATE_STAMP = "UPDATE_STAMP";
+
+	// Age of an angel without one
+	private static final int NO_AGE = Integer.MIN_VALUE;
+
+	// Characters of the ID suffix held by the sort key, each in 8 bits
+	private static final int SUFFIX_CHARS = 4;
+
+	/**
+	 * Orders angels by ID, ex: 9A before 10A, the same as ID_ORDER. Only the
+	 * precomputed sort keys are compared, unless two angels share a key, when
+	 * the whole IDs are compared, ex: 012A before 12A. See sortKeyOf().
+	 */
+	public static final Comparator<Angel> BY_ID = Comparator
+			.comparingLong(Angel::getSortKey)
+			.thenComparing(Angel::getKey,
+					Comparator.nullsFirst(Comparator.naturalOrder()));
+
+	/**
+	 * Orders IDs the same as BY_ID orders angels, for maps keyed by ID. No
+	 * Strings are created by each comparison.
+	 */
+	public static final Comparator<String> ID_ORDER = Comparator
+			.comparingLong(Angel::sortKeyOf)
+			.thenComparing(Comparator.naturalOrder());
+
+	// Attribute of each stored attribute name
+	private static final Map<String, Attribute> ATTRIBUTES = new HashMap<>();
+	static {
+		for (Attribute attribute : Attribute.values())
+			ATTRIBUTES.put(attribute.toString(), attribute);
+	}
+
+	// ID of the angel, also the document key, along with its suffix and the
+	// sort key holding its number
+	private String id;
+	private String idSuffix;
+	private long sortKey;
+
+	// Collection and revision of the document the angel was read from
+	private String collection;
+	private String revision;
+	private long updateStamp;
+
+	private Gender gender;
+	private int age = NO_AGE;
+	private String shoeSize, clothesSize, shirtSize, pantSize;
+	private String[] wishes, books, specials, missing;
+	private Status status;
+	private String location;
+
+	// Attributes of the document that are not angel attributes. Null unless
+	// the document has any, which is rare.
+	private Map<String, Object> others;
 
 	public Angel() {
 	};
@@ -18,78 +93,487 @@ public class Angel implements Comparable<Angel> {
 	/**
 	 * Creates a new instance of an Angel with the given values from the given
 	 * BaseDocument
-	 * 
+	 *
 	 * @param baseDocument Document containing direct information from the
 	 *                     database related to a specific angel
-	 * 
+	 *
 	 */
 	public Angel(BaseDocument baseDocument) {
-		this.baseDocument = baseDocument;
+		if (baseDocument.getId() != null)
+			set("_id", baseDocument.getId());
+		if (baseDocument.getKey() != null)
+			set("_key", baseDocument.getKey());
+		revision = baseDocument.getRevision();
+		for (Map.Entry<String, Object> property : baseDocument.getProperties()
+				.entrySet())
+			set(property.getKey(), property.getValue());
+	}
+
+	/**
+	 * Creates a copy of the angel. Lists are shared, as they are never
+	 * changed once set.
+	 *
+	 * @param angel The angel to copy
+	 */
+	public Angel(Angel angel) {
+		id = angel.id;
+		idSuffix = angel.idSuffix;
+		sortKey = angel.sortKey;
+		collection = angel.collection;
+		revision = angel.revision;
+		updateStamp = angel.updateStamp;
+		gender = angel.gender;
+		age = angel.age;
+		shoeSize = angel.shoeSize;
+		clothesSize = angel.clothesSize;
+		shirtSize = angel.shirtSize;
+		pantSize = angel.pantSize;
+		wishes = angel.wishes;
+		books = angel.books;
+		specials = angel.specials;
+		missing = angel.missing;
+		status = angel.status;
+		location = angel.location;
+		if (angel.others != null)
+			others = new HashMap<>(angel.others);
 	}
 
 	/**
 	 * Adds a new attribute and its value to the attributes associated with
-	 * the angel.
-	 * 
+	 * the angel, replacing any previous value.
+	 *
+	 * When the ID is added, the number and suffix of the ID are also added.
+	 * Lists may be given as an array or a collection.
+	 *
 	 * @param attribute The attribute being added
 	 * @param value     The value assigned to the attribute.
 	 */
 	public void addAttribute(Attribute attribute, Object value) {
-		if (attribute == Attribute.ID)
-			baseDocument.setKey(value.toString());
+		switch (attribute) {
+		case ID:
+			id = value == null ? null : value.toString();
+			idSuffix = id == null ? null : parseIDSuffix(id).intern();
+			sortKey = id == null ? 0 : sortKeyOf(id);
+			break;
+		case GENDER:
+			gender = value instanceof Gender ? (Gender) value
+					: value == null ? null : Gender.parse(value.toString());
+			if (gender == null && value != null)
+				keepUnknown(attribute, value);
+			break;
+		case AGE:
+			age = toAge(value);
+			if (age == NO_AGE && value != null)
+				keepUnknown(attribute, value);
+			break;
+		case SHOE_SIZE:
+			shoeSize = intern(value);
+			break;
+		case CLOTHES_SIZE:
+			clothesSize = intern(value);
+			break;
+		case SHIRT_SIZE:
+			shirtSize = intern(value);
+			break;
+		case PANT_SIZE:
+			pantSize = intern(value);
+			break;
+		case WISH:
+			wishes = toArray(value);
+			break;
+		case BOOK:
+			books = toArray(value);
+			break;
+		case SPECIAL:
+			specials = toArray(value);
+			break;
+		case MISSING:
+			missing = toArray(value);
+			break;
+		case STATUS:
+			status = value instanceof Status ? (Status) value
+					: value == null ? null : toStatus(value.toString());
+			if (status == null && value != null)
+				keepUnknown(attribute, value);
+			break;
+		case LOCATION:
+			location = intern(value);
+			break;
+		}
+	}
+
+	/**
+	 * Sets an attribute of the document by its stored name, ex: STATUS or
+	 * _rev. Used when reading the angel from the database. Attributes derived
+	 * from the ID are ignored, and attributes that are not angel attributes
+	 * are kept so they are written back unchanged.
+	 *
+	 * @param name  The stored name of the attribute
+	 * @param value The stored value of the attribute
+	 */
+	public void set(String name, Object value) {
+		switch (name) {
+		case "_key":
+			if (id == null)
+				addAttribute(Attribute.ID, value);
+			return;
+		case "_id":
+			String documentID = String.valueOf(value);
+			int slash = documentID.indexOf('/');
+			collection = slash < 0 ? null
+					: documentID.substring(0, slash).intern();
+			return;
+		case "_rev":
+			revision = value == null ? null : value.toString();
+			return;
+		case ID_NUMBER:
+		case ID_SUFFIX:
+			return;
+		case UPDATE_STAMP:
+			updateStamp = value instanceof Number ? ((Number) value).longValue()
+					: 0;
+			return;
+		}
 
-		baseDocument.addAttribute(attribute.toString(), value);
+		Attribute attribute = ATTRIBUTES.get(name);
+		if (attribute != null) {
+			addAttribute(attribute, value);
+		} else {
+			if (others == null)
+				others = new HashMap<>(4);
+			others.put(name, value);
+		}
 	}
 
 	/**
-	 * Returns a mapping of all the angels attributes.
+	 * Keeps a value that is not valid for its attribute, such as a status
+	 * that no longer exists, so it is written back unchanged rather than
+	 * lost.
+	 *
+	 * @param attribute The attribute of the value
+	 * @param value     The stored value
+	 */
+	private void keepUnknown(Attribute attribute, Object value) {
+		if (others == null)
+			others = new HashMap<>(4);
+		others.put(attribute.toString(), value);
+	}
+
+	/**
+	 * @param value The age as a number or text
+	 * @return The age, NO_AGE if there is none or it is not a number
+	 */
+	private static int toAge(Object value) {
+		if (value instanceof Number)
+			return ((Number) value).intValue();
+		try {
+			return value == null ? NO_AGE
+					: Integer.parseInt(value.toString().trim());
+		} catch (NumberFormatException e) {
+			return NO_AGE;
+		}
+	}
+
+	/**
+	 * @param name The name of the status, ex: HOLD
+	 * @return The status with the name, null if there is none
+	 */
+	private static Status toStatus(String name) {
+		try {
+			return Status.valueOf(name);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param value A value shared by many angels, such as a size
+	 * @return The single shared copy of the value's text
+	 */
+	private static String intern(Object value) {
+		return value == null ? null : value.toString().intern();
+	}
+
+	/**
+	 * @param value A list as an array or a collection
+	 * @return The values of the list as text
+	 */
+	private static String[] toArray(Object value) {
+		if (value == null)
+			return null;
+
+		Object[] values;
+		if (value instanceof Object[])
+			values = (Object[]) value;
+		else if (value instanceof Collection)
+			values = ((Collection<?>) value).toArray();
+		else
+			values = new Object[] { value };
+
+		String[] texts = new String[values.length];
+		for (int i = 0; i < values.length; ++i)
+			texts[i] = String.valueOf(values[i]);
+		return texts;
+	}
+
+	/**
+	 * Returns the number at the start of an ID, ex: 123 for the ID 123B.
+	 *
+	 * @param id The angel ID
+	 * @return The leading number of the ID, 0 if the ID does not start with a
+	 *         number. Numbers too large for an int are held at
+	 *         Integer.MAX_VALUE, so such IDs sort after every other ID.
+	 */
+	public static int parseIDNumber(String id) {
+		long number = 0;
+		for (int i = 0; i < id.length() && isDigit(id.charAt(i)); ++i) {
+			number = number * 10 + (id.charAt(i) - '0');
+			if (number > Integer.MAX_VALUE)
+				return Integer.MAX_VALUE;
+		}
+		return (int) number;
+	}
+
+	/**
+	 * Returns the key ordering the ID, ex: 9A before 10A. The number of the
+	 * ID is held in the upper 32 bits and the first four characters of the
+	 * suffix in the lower 32 bits, so comparing two keys compares the number
+	 * and then the suffix. IDs only differing after the fourth character of
+	 * their suffix share a key.
 	 * 
+	 * @param id The angel ID
+	 * @return The sort key of the ID
+	 */
+	public static long sortKeyOf(String id) {
+		int start = 0;
+		while (start < id.length() && isDigit(id.charAt(start)))
+			start++;
+
+		long suffix = 0;
+		for (int i = 0; i < SUFFIX_CHARS; ++i) {
+			int c = start + i < id.length() ? id.charAt(start + i) : 0;
+			suffix = suffix << 8 | Math.min(c, 0xFF);
+		}
+		return (long) parseIDNumber(id) << 32 | suffix;
+	}
+
+	/**
+	 * @param c A character of an ID
+	 * @return True if the character is 0 to 9. Unlike Character.isDigit(),
+	 *         digits of other scripts are not included.
+	 */
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Returns the characters following the number of an ID, ex: B for the ID
+	 * 123B.
+	 *
+	 * @param id The angel ID
+	 * @return The characters after the leading number of the ID
+	 */
+	public static String parseIDSuffix(String id) {
+		int end = 0;
+		while (end < id.length() && isDigit(id.charAt(end)))
+			end++;
+		return id.substring(end);
+	}
+
+	/**
+	 * @return The document key of the angel within the database, the same as
+	 *         the angel ID.
+	 */
+	public String getKey() {
+		return id;
+	}
+
+	/**
+	 * @return The number at the start of the ID, ex: 123 for the ID 123B
+	 */
+	public int getIDNumber() {
+		return (int) (sortKey >>> 32);
+	}
+
+	/**
+	 * @return The characters following the number of the ID, ex: B for the
+	 *         ID 123B
+	 */
+	public String getIDSuffix() {
+		return idSuffix;
+	}
+
+	/**
+	 * @return The key ordering the angel by ID. See sortKeyOf().
+	 */
+	public long getSortKey() {
+		return sortKey;
+	}
+
+	/**
+	 * @return The document ID of the angel, ex: angels/12A. Null if the angel
+	 *         was not read from a collection.
+	 */
+	public String getDocumentID() {
+		return collection == null || id == null ? null : collection + "/" + id;
+	}
+
+	/**
+	 * @return The name of the collection the angel was read from. Null if the
+	 *         angel was not read from a collection.
+	 */
+	public String getCollection() {
+		return collection;
+	}
+
+	/**
+	 * @param collection The name of the collection containing the angel
+	 */
+	public void setCollection(String collection) {
+		this.collection = collection == null ? null : collection.intern();
+	}
+
+	/**
+	 * @return The revision of the document the angel was read from. Null if
+	 *         the angel was not read from the database.
+	 */
+	public String getRevision() {
+		return revision;
+	}
+
+	/**
+	 * @param revision The revision of the document holding the angel
+	 */
+	public void setRevision(String revision) {
+		this.revision = revision;
+	}
+
+	/**
+	 * @return The time, in milliseconds, the angel was last written. 0 if the
+	 *         angel has not been written.
+	 */
+	public long getUpdateStamp() {
+		return updateStamp;
+	}
+
+	/**
+	 * @param updateStamp The time, in milliseconds, the angel was written
+	 */
+	public void setUpdateStamp(long updateStamp) {
+		this.updateStamp = updateStamp;
+	}
+
+	/**
+	 * @return The status of the angel. Null if it has none.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return The gender of the angel. Null if it has none.
+	 */
+	public Gender getGender() {
+		return gender;
+	}
+
+	/**
+	 * @return The age of the angel. -1 if it has none.
+	 */
+	public int getAge() {
+		return age == NO_AGE ? -1 : age;
+	}
+
+	/**
+	 * Returns the document stored within the database for the angel.
+	 *
 	 * @return A BaseDocument containing the angels attributes and their values
 	 */
-	public BaseDocument getAttributes() {
-		return baseDocument;
+	public BaseDocument toDocument() {
+		BaseDocument document = new BaseDocument();
+		document.setKey(id);
+		document.setId(getDocumentID());
+		document.setRevision(revision);
+		if (others != null)
+			others.forEach(document::addAttribute);
+
+		for (Attribute attribute : Attribute.values()) {
+			Object value = get(attribute);
+			if (value != null)
+				document.addAttribute(attribute.toString(), value);
+		}
+		if (id != null) {
+			document.addAttribute(ID_NUMBER, getIDNumber());
+			document.addAttribute(ID_SUFFIX, idSuffix);
+		}
+		if (updateStamp != 0)
+			document.addAttribute(UPDATE_STAMP, updateStamp);
+		return document;
 	}
 
 	/**
-	 * Returns the value associated with the attribute.
-	 * 
+	 * Returns the value associated with the attribute, as stored within the
+	 * database. The status and gender are returned as text, ex: HOLD, and
+	 * lists are returned as a List that cannot be changed.
+	 *
 	 * @param attribute The attribute to find the value for.
 	 * @return A string, in form of an object, representing the value associated
-	 *         with the attribute.
+	 *         with the attribute. Null if the angel does not have the
+	 *         attribute.
 	 */
 	public Object get(Attribute attribute) {
-		return baseDocument.getAttribute(attribute.toString());
+		switch (attribute) {
+		case ID:
+			return id;
+		case GENDER:
+			return gender == null ? null : gender.toString();
+		case AGE:
+			return age == NO_AGE ? null : age;
+		case SHOE_SIZE:
+			return shoeSize;
+		case CLOTHES_SIZE:
+			return clothesSize;
+		case SHIRT_SIZE:
+			return shirtSize;
+		case PANT_SIZE:
+			return pantSize;
+		case WISH:
+			return toList(wishes);
+		case BOOK:
+			return toList(books);
+		case SPECIAL:
+			return toList(specials);
+		case MISSING:
+			return toList(missing);
+		case STATUS:
+			return status == null ? null : status.toString();
+		case LOCATION:
+			return location;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @param values The values of a list attribute
+	 * @return The values as a List that cannot be changed, null if none
+	 */
+	private static List<String> toList(String[] values) {
+		return values == null ? null
+				: Collections.unmodifiableList(Arrays.asList(values));
 	}
 
 	/**
 	 * Method used to compare two angels. This comparison is done with the
-	 * angels ID values. Since ID values are unique this is the standard for
-	 * comparing.
-	 * 
-	 * This assumes that there are no leading zeros to the string ID values.
-	 * 
+	 * angels ID values, ex: 9A before 10A. Since ID values are unique this is
+	 * the standard for comparing.
+	 *
 	 * @param Angel o The angel to compare to this angel
-	 * @return -1 if this.ID <. o.ID, 1 if this.ID > o.ID, 0 means equal.
+	 * @return Negative if this.ID < o.ID, positive if this.ID > o.ID, 0
+	 *         means equal.
 	 */
 	@Override
 	public int compareTo(Angel o) {
-		String thisID = this.get(Attribute.ID).toString();
-		String oID = o.get(Attribute.ID).toString();
-
-		// If string length is larger, the value must be larger
-		if (thisID.length() > oID.length())
-			return 1;
-		else if (thisID.length() < oID.length())
-			return -1;
-
-		// Lengths equal so check
-		int i = -1;
-		while (i++ < thisID.length()) {
-			if (thisID.charAt(i) > oID.charAt(i))
-				return 1;
-			else if (thisID.charAt(i) < oID.charAt(i))
-				return -1;
-		}
-		return 0; // ID's are equal
+		return BY_ID.compare(this, o);
 	}
 }
@@ -0,0 +1,37 @@
+/**
+ * This class represents the genders of an angel. Genders are stored within
+ * the database in lower case, ex: boy.
+ *
+ * @author Nicholas Kunzler
+ */
+
+package angels;
+
+public enum Gender {
+
+	BOY, 	// Blue status button
+	GIRL; 	// Pink status button
+
+	private final String stored = name().toLowerCase();
+
+	/**
+	 * Returns the gender with the name, ignoring case, ex: BOY for boy or Boy.
+	 *
+	 * @param name The name of the gender
+	 * @return The gender with the name. Null if no gender has the name.
+	 */
+	public static Gender parse(String name) {
+		for (Gender gender : values())
+			if (gender.stored.equalsIgnoreCase(name))
+				return gender;
+		return null;
+	}
+
+	/**
+	 * @return The gender as stored within the database, ex: boy
+	 */
+	@Override
+	public String toString() {
+		return stored;
+	}
+}
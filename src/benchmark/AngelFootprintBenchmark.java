@@ -0,0 +1,197 @@
+/**
+ * Benchmark comparing the memory held by 100,000 angels when each angel keeps
+ * its attributes within a BaseDocument, a HashMap of attribute names to
+ * values, against the typed Angel.
+ *
+ * Both sets are built from the same values, with every text value a new
+ * String as it would be when read from the database. The memory used is read
+ * after garbage collection, so run with a fixed heap for stable results, ex:
+ * java -Xms1g -Xmx1g benchmark.AngelFootprintBenchmark
+ *
+ * Does not require a database.
+ *
+ * @author Nicholas Kunzler
+ */
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import com.arangodb.entity.BaseDocument;
+
+import angels.Angel;
+import angels.Attribute;
+import angels.Status;
+
+public class AngelFootprintBenchmark {
+
+	private static final int ANGELS = 100000;
+	private static final int LOOKUPS = 10000000;
+
+	private static final String[] SHOE_SIZES = { "10", "11", "12", "13", "1",
+			"2", "3", "4", "5", "6", "7", "8", "9" };
+	private static final String[] CLOTHES_SIZES = { "2T", "3T", "4T", "5", "6",
+			"7", "8", "10", "12", "14", "S", "M", "L", "XL" };
+	private static final String[] ITEMS = { "Lego set", "Art supplies",
+			"Soccer ball", "Doll", "Board game", "Puzzle", "Remote control car",
+			"Scarf", "Gloves", "Hat", "Chapter book", "Picture book" };
+
+	public static void main(String[] args) {
+		// Before, the attributes of each angel within a BaseDocument
+		report("BaseDocument", measure(AngelFootprintBenchmark::document),
+				document -> ((BaseDocument) document).getAttribute("STATUS"));
+
+		// After, the typed angel
+		report("Typed Angel", measure(AngelFootprintBenchmark::angel),
+				angel -> ((Angel) angel).getStatus());
+	}
+
+	/**
+	 * Creates every angel and measures the memory held once they are created.
+	 *
+	 * @param create Creates the angel with the given number
+	 * @return The created angels, with the bytes held per angel last
+	 */
+	private static Object[] measure(IntFunction<Object> create) {
+		long before = usedMemory();
+		Object[] angels = new Object[ANGELS + 1];
+		for (int i = 0; i < ANGELS; ++i)
+			angels[i] = create.apply(i);
+		long after = usedMemory();
+
+		angels[ANGELS] = (after - before) / (double) ANGELS;
+		return angels;
+	}
+
+	/**
+	 * Prints the bytes held per angel and the time to read the status of the
+	 * angels.
+	 *
+	 * @param name   The name of the representation
+	 * @param angels The created angels, with the bytes held per angel last
+	 * @param status Reads the status of an angel
+	 */
+	private static void report(String name, Object[] angels,
+			Function<Object, Object> status) {
+		int found = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < LOOKUPS; ++i)
+			if (status.apply(angels[i % ANGELS]) != null)
+				found++;
+		long elapsed = System.nanoTime() - start;
+
+		System.out.printf("%-14s %8.1f bytes per angel | %6.2f ns per "
+				+ "status read (%d)%n", name, (Double) angels[ANGELS],
+				elapsed / (double) LOOKUPS, found);
+	}
+
+	/**
+	 * @return The bytes of heap in use after garbage collection
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; ++i) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Creates the document of the angel with the number, as read from the
+	 * database before the typed angel.
+	 *
+	 * @param number The number of the angel
+	 * @return The document of the angel
+	 */
+	private static Object document(int number) {
+		Random random = new Random(number);
+		String id = fresh((number / 2 + 1) + (number % 2 == 0 ? "A" : "B"));
+
+		BaseDocument document = new BaseDocument();
+		document.setKey(id);
+		document.setId(fresh("angels/" + id));
+		document.setRevision(fresh("_" + Long.toString(number * 7919L, 36)));
+		document.addAttribute("ID", id);
+		document.addAttribute(Angel.ID_NUMBER, (long) Angel.parseIDNumber(id));
+		document.addAttribute(Angel.ID_SUFFIX, fresh(Angel.parseIDSuffix(id)));
+		document.addAttribute("GENDER", fresh(random.nextBoolean() ? "boy"
+				: "girl"));
+		document.addAttribute("AGE", (long) (random.nextInt(12) + 1));
+		document.addAttribute("SHOE_SIZE", fresh(pick(random, SHOE_SIZES)));
+		document.addAttribute("CLOTHES_SIZE",
+				fresh(pick(random, CLOTHES_SIZES)));
+		document.addAttribute("SHIRT_SIZE", fresh(pick(random, CLOTHES_SIZES)));
+		document.addAttribute("PANT_SIZE", fresh(pick(random, CLOTHES_SIZES)));
+		document.addAttribute("WISH", items(random, 3));
+		document.addAttribute("BOOK", items(random, 1));
+		document.addAttribute("SPECIAL", items(random, 1));
+		document.addAttribute("STATUS",
+				fresh(Status.values()[random.nextInt(6)].toString()));
+		document.addAttribute("MISSING", new ArrayList<String>());
+		document.addAttribute("LOCATION", fresh("on_site"));
+		document.addAttribute(Angel.UPDATE_STAMP,
+				1500000000000L + number * 1000L);
+		return document;
+	}
+
+	/**
+	 * Creates the typed angel with the number, set the same way as the
+	 * AngelDeserializer sets each attribute.
+	 *
+	 * @param number The number of the angel
+	 * @return The angel
+	 */
+	private static Object angel(int number) {
+		BaseDocument document = (BaseDocument) document(number);
+		Angel angel = new Angel();
+		angel.set("_key", document.getKey());
+		angel.set("_id", document.getId());
+		angel.set("_rev", document.getRevision());
+		for (Attribute attribute : Attribute.values()) {
+			Object value = document.getAttribute(attribute.toString());
+			if (value instanceof List)
+				value = ((List<?>) value).toArray(new String[0]);
+			angel.set(attribute.toString(), value);
+		}
+		angel.set(Angel.UPDATE_STAMP,
+				document.getAttribute(Angel.UPDATE_STAMP));
+		return angel;
+	}
+
+	/**
+	 * @param random The random values of the angel
+	 * @param count  The number of items
+	 * @return A list of new item Strings
+	 */
+	private static List<String> items(Random random, int count) {
+		String[] items = new String[count];
+		for (int i = 0; i < count; ++i)
+			items[i] = fresh(pick(random, ITEMS));
+		return new ArrayList<>(Arrays.asList(items));
+	}
+
+	/**
+	 * @return A random value of the values
+	 */
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	/**
+	 * @param text The text
+	 * @return A new String of the text, as each value read from the database
+	 *         is a new String
+	 */
+	private static String fresh(String text) {
+		return new String(text.toCharArray());
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Benchmark comparing the time to sort 100,000 angels by ID when each
+ * comparison parses the number and suffix out of the ID String, as was done
+ * before, against comparing the precomputed sort keys of Angel.BY_ID.
+ *
+ * Each ordering sorts the same shuffled angels several times, the first rounds
+ * being a warm up. Run with a fixed heap for stable results, ex:
+ * java -Xms1g -Xmx1g benchmark.AngelSortBenchmark
+ *
+ * Does not require a database.
+ *
+ * @author Nicholas Kunzler
+ */
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import angels.Angel;
+import angels.Attribute;
+
+public class AngelSortBenchmark {
+
+	private static final int ANGELS = 100000;
+	private static final int WARM_UP = 5;
+	private static final int ROUNDS = 10;
+
+	// Before, each comparison parses both IDs into a number and a suffix
+	private static final Comparator<Angel> PARSED = Comparator
+			.comparingInt((Angel angel) -> parseIDNumber(angel.getKey()))
+			.thenComparing(angel -> parseIDSuffix(angel.getKey()));
+
+	public static void main(String[] args) {
+		List<Angel> angels = new ArrayList<>();
+		for (int i = 0; i < ANGELS; ++i) {
+			Angel angel = new Angel();
+			angel.addAttribute(Attribute.ID,
+					(i / 2 + 1) + (i % 2 == 0 ? "A" : "B"));
+			angels.add(angel);
+		}
+		Collections.shuffle(angels, new Random(42));
+
+		List<Angel> parsed = sort("Parsed IDs", angels, PARSED);
+		List<Angel> packed = sort("Packed keys", angels, Angel.BY_ID);
+		System.out.println("Same order: " + parsed.equals(packed));
+	}
+
+	/**
+	 * Sorts copies of the angels with the ordering and prints the average
+	 * time of a sort, after the warm up rounds.
+	 *
+	 * @param name     The name of the ordering
+	 * @param angels   The shuffled angels
+	 * @param ordering The ordering to sort with
+	 * @return The angels in sorted order
+	 */
+	private static List<Angel> sort(String name, List<Angel> angels,
+			Comparator<Angel> ordering) {
+		List<Angel> sorted = null;
+		long elapsed = 0;
+		for (int round = 0; round < WARM_UP + ROUNDS; ++round) {
+			sorted = new ArrayList<>(angels);
+			long start = System.nanoTime();
+			sorted.sort(ordering);
+			if (round >= WARM_UP)
+				elapsed += System.nanoTime() - start;
+		}
+
+		System.out.printf("%-12s %8.2f ms per sort of %d angels%n", name,
+				elapsed / (ROUNDS * 1e6), angels.size());
+		return sorted;
+	}
+
+	/**
+	 * The ID number parsing used before the sort key, creating a substring
+	 * and an Integer each call.
+	 */
+	private static int parseIDNumber(String id) {
+		int end = 0;
+		while (end < id.length() && Character.isDigit(id.charAt(end)))
+			end++;
+
+		if (end == 0)
+			return 0;
+		return Integer.valueOf(id.substring(0, end));
+	}
+
+	/**
+	 * The ID suffix parsing used before the sort key, creating a substring
+	 * each call.
+	 */
+	private static String parseIDSuffix(String id) {
+		int end = 0;
+		while (end < id.length() && Character.isDigit(id.charAt(end)))
+			end++;
+		return id.substring(end);
+	}
+}
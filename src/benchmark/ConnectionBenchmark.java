@@ -0,0 +1,92 @@
+/**
+ * Benchmark comparing the per-call latency of a database lookup when the
+ * connection is shut down after every call against the pooled connection that
+ * is kept open by the Database class.
+ *
+ * Requires a local ArangoDB instance. The user and password are read from the
+ * same environment variables used by the application, ArangoDB_user and
+ * ArangoDB_password.
+ *
+ * @author Nicholas Kunzler
+ */
+package benchmark;
+
+import java.util.Arrays;
+
+import com.arangodb.ArangoDB;
+
+import database.DBCollection;
+import database.Database;
+import database.DatabaseController;
+
+public class ConnectionBenchmark {
+
+	private static final String DB_NAME = "FW_Distribution_Benchmark";
+	private static final int WARMUP_CALLS = 50;
+	private static final int MEASURED_CALLS = 500;
+
+	public static void main(String[] args) {
+		String user = System.getenv("ArangoDB_user");
+		String password = System.getenv("ArangoDB_password");
+
+		DatabaseController controller = new DatabaseController(
+				new Database(DB_NAME, user, password));
+		controller.createCollection(DBCollection.ANGELS);
+
+		// Previous behavior, the connection is shutdown after every call
+		ArangoDB arangoDB = new ArangoDB.Builder().user(user)
+				.password(password).build();
+		Runnable shutdownPerCall = () -> {
+			arangoDB.db(DB_NAME).collection(DBCollection.ANGELS.toString())
+					.documentExists("1A");
+			arangoDB.shutdown();
+		};
+
+		// Current behavior, the pooled connection is reused
+		Runnable pooled = () -> controller.contains("1A", DBCollection.ANGELS);
+
+		report("Shutdown per call", measure(shutdownPerCall));
+		report("Pooled connection", measure(pooled));
+
+		arangoDB.shutdown();
+		controller.close();
+	}
+
+	/**
+	 * Runs the call the desired number of times and records the latency of
+	 * each of the measured calls.
+	 *
+	 * @param call The database call to measure
+	 * @return Latency of each measured call in nanoseconds, sorted ascending
+	 */
+	private static long[] measure(Runnable call) {
+		for (int i = 0; i < WARMUP_CALLS; ++i)
+			call.run();
+
+		long[] latencies = new long[MEASURED_CALLS];
+		for (int i = 0; i < MEASURED_CALLS; ++i) {
+			long start = System.nanoTime();
+			call.run();
+			latencies[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(latencies);
+		return latencies;
+	}
+
+	/**
+	 * Prints the mean and percentile latencies of the measured calls.
+	 *
+	 * @param name      The name of the measured call
+	 * @param latencies Sorted latencies of each call in nanoseconds
+	 */
+	private static void report(String name, long[] latencies) {
+		long total = 0;
+		for (long latency : latencies)
+			total += latency;
+
+		System.out.printf("%-20s mean %8.3f ms | p50 %8.3f ms | p99 %8.3f ms%n",
+				name, total / (double) latencies.length / 1e6,
+				latencies[latencies.length / 2] / 1e6,
+				latencies[(int) (latencies.length * 0.99)] / 1e6);
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * Benchmark comparing the latency of keyword searches run as the CONTAINS
+ * filter of QueryTemplate.SEARCH_ANGELS, reading every angel, against the
+ * same searches run on the ArangoSearch view of SearchView. The first page of
+ * each search, as read by the search display, is compared the same way. Each
+ * search is measured with 10,000 and then 100,000 angels within the
+ * collection.
+ *
+ * Requires a local ArangoDB 3.8 or newer instance. The user and password are
+ * read from the same environment variables used by the application,
+ * ArangoDB_user and ArangoDB_password. The angels are added to the benchmark
+ * database and are left there for later runs.
+ *
+ * @author Nicholas Kunzler
+ */
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import angels.Angel;
+import angels.Attribute;
+import database.DBCollection;
+import database.Database;
+import database.DatabaseController;
+import database.QueryTemplate;
+import database.SearchCriterion;
+
+public class SearchViewBenchmark {
+
+	private static final String DB_NAME = "FW_Distribution_Benchmark";
+	private static final int[] SIZES = { 10000, 100000 };
+	private static final int BATCH = 1000;
+	private static final int WARMUP_CALLS = 5;
+	private static final int MEASURED_CALLS = 50;
+	private static final int PAGE_SIZE = 100;
+
+	// Milliseconds to wait for the view to index newly added angels
+	private static final long INDEX_WAIT = 60 * 1000;
+
+	private static final String[] ITEMS = { "Lego set", "Art supplies",
+			"Soccer ball", "Doll", "Board game", "Puzzle", "Remote control car",
+			"Scarf", "Gloves", "Hat", "Chapter book", "Picture book" };
+
+	// Keywords of each search, all searching the wishes
+	private static final String[][] SEARCHES = { { "lego" },
+			{ "ball", "soccer" }, { "control car" } };
+
+	public static void main(String[] args) throws InterruptedException {
+		String user = System.getenv("ArangoDB_user");
+		String password = System.getenv("ArangoDB_password");
+
+		DatabaseController controller = new DatabaseController(
+				new Database(DB_NAME, user, password));
+		controller.createCollection(DBCollection.ANGELS);
+		controller.ensureIndexes(DBCollection.ANGELS);
+		if (!controller.ensureSearchView(DBCollection.ANGELS)) {
+			System.err.println("Unable to create the search view");
+			controller.close();
+			return;
+		}
+
+		int added = 0;
+		for (int size : SIZES) {
+			for (; added < size; added += BATCH)
+				controller.insertAll(angels(added, BATCH));
+
+			System.out.println(size + " angels");
+			for (String[] keywords : SEARCHES) {
+				List<SearchCriterion> criteria = new ArrayList<>();
+				for (String keyword : keywords)
+					criteria.add(new SearchCriterion(Attribute.WISH, keyword,
+							false));
+
+				Map<String, Object> bindVars = QueryTemplate.bindVars(
+						"criteria", criteria(keywords),
+						"@collection", DBCollection.ANGELS);
+				int expected = controller
+						.query(QueryTemplate.SEARCH_ANGELS, bindVars).size();
+				waitForView(controller, criteria, expected);
+
+				String name = Arrays.toString(keywords);
+				report(name + " CONTAINS", measure(() -> controller
+						.query(QueryTemplate.SEARCH_ANGELS, bindVars)),
+						expected);
+				report(name + " VIEW", measure(() -> controller
+						.search(criteria)), expected);
+
+				Map<String, Object> pageVars = QueryTemplate.bindVars(
+						"criteria", criteria(keywords),
+						"afterNumber", -1,
+						"afterSuffix", "",
+						"limit", PAGE_SIZE,
+						"@collection", DBCollection.ANGELS);
+				int page = Math.min(expected, PAGE_SIZE);
+				report(name + " CONTAINS PAGE", measure(() -> controller
+						.query(QueryTemplate.SEARCH_ANGELS_PAGE, pageVars)),
+						page);
+				report(name + " VIEW PAGE", measure(() -> controller
+						.searchPage(criteria, null, PAGE_SIZE)), page);
+			}
+		}
+		controller.close();
+	}
+
+	/**
+	 * Waits until the view has indexed the added angels, as a view is updated
+	 * shortly after a write rather than with it.
+	 *
+	 * @param controller The controller of the database
+	 * @param criteria   The criteria of the search
+	 * @param expected   The number of angels found reading every angel
+	 */
+	private static void waitForView(DatabaseController controller,
+			List<SearchCriterion> criteria, int expected)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + INDEX_WAIT;
+		while (controller.search(criteria).size() < expected
+				&& System.currentTimeMillis() < deadline)
+			Thread.sleep(500);
+	}
+
+	/**
+	 * Runs the search the desired number of times and records the latency of
+	 * each of the measured searches.
+	 *
+	 * @param search The search to measure
+	 * @return Latency of each measured search in nanoseconds, sorted ascending
+	 */
+	private static long[] measure(Runnable search) {
+		for (int i = 0; i < WARMUP_CALLS; ++i)
+			search.run();
+
+		long[] latencies = new long[MEASURED_CALLS];
+		for (int i = 0; i < MEASURED_CALLS; ++i) {
+			long start = System.nanoTime();
+			search.run();
+			latencies[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(latencies);
+		return latencies;
+	}
+
+	/**
+	 * Prints the mean and percentile latencies of the measured searches.
+	 *
+	 * @param name      The name of the measured search
+	 * @param latencies Sorted latencies of each search in nanoseconds
+	 * @param found     The number of angels found by the search
+	 */
+	private static void report(String name, long[] latencies, int found) {
+		long total = 0;
+		for (long latency : latencies)
+			total += latency;
+
+		System.out.printf("%-32s mean %8.3f ms | p50 %8.3f ms | p99 %8.3f ms"
+				+ " | %d found%n", name,
+				total / (double) latencies.length / 1e6,
+				latencies[latencies.length / 2] / 1e6,
+				latencies[(int) (latencies.length * 0.99)] / 1e6, found);
+	}
+
+	/**
+	 * @param keywords The keywords of the search
+	 * @return The criteria as the SEARCH_ANGELS bind variable, {attribute,
+	 *         keyword, exact}
+	 */
+	private static List<Map<String, Object>> criteria(String[] keywords) {
+		List<Map<String, Object>> criteria = new ArrayList<>();
+		for (String keyword : keywords) {
+			Map<String, Object> criterion = new HashMap<>();
+			criterion.put("attribute", Attribute.WISH.toString());
+			criterion.put("keyword", keyword);
+			criterion.put("exact", false);
+			criteria.add(criterion);
+		}
+		return criteria;
+	}
+
+	/**
+	 * Creates the angels numbered from the first, with random wishes.
+	 *
+	 * @param first The number of the first angel
+	 * @param count The number of angels
+	 * @return The angels
+	 */
+	private static List<Angel> angels(int first, int count) {
+		List<Angel> angels = new ArrayList<>();
+		for (int number = first; number < first + count; ++number) {
+			Random random = new Random(number);
+			Angel angel = new Angel();
+			angel.addAttribute(Attribute.ID,
+					(number / 2 + 1) + (number % 2 == 0 ? "A" : "B"));
+			angel.addAttribute(Attribute.GENDER,
+					random.nextBoolean() ? "boy" : "girl");
+			angel.addAttribute(Attribute.AGE, random.nextInt(12) + 1);
+			angel.addAttribute(Attribute.WISH, Arrays.asList(
+					ITEMS[random.nextInt(ITEMS.length)],
+					ITEMS[random.nextInt(ITEMS.length)]));
+			angel.addAttribute(Attribute.STATUS, "NOT_STARTED");
+			angels.add(angel);
+		}
+		return angels;
+	}
+}
@@ -12,11 +12,11 @@ import java.util.concurrent.ExecutionException;
 
 import angels.Angel;
 import angels.Attribute;
+import angels.Gender;
 import angels.Status;
 import controllers.Controller;
 import customFX.Popup;
-import database.DBCollection;
-import database.DatabaseController;
+import database.AngelRepository;
 import displays.AngelDisplays;
 import displays.Display;
 import javafx.fxml.FXML;
@@ -48,19 +48,17 @@ public class AddController extends Controller {
 	@FXML
 	private Button addAngelButton;
 
-	private DatabaseController dbController;
+	private AngelRepository repository;
 
 	/**
 	 * Constructor for the controller used to validate and add a new angel from
 	 * the inputs of the AddAngel.fxml scene.
 	 * 
-	 * @param controller The database controller used to connect to the
-	 *                   database.
-	 * @param collection The collection in which an angel will eventually be
+	 * @param repository The repository in which an angel will eventually be
 	 *                   added to.
 	 */
-	public AddController(DatabaseController controller) {
-		dbController = controller;
+	public AddController(AngelRepository repository) {
+		this.repository = repository;
 	}
 
 	/**
@@ -94,6 +92,14 @@ public class AddController extends Controller {
 				return;
 			}
 
+			// The number of the ID must fit the keypad, at most 9 digits
+			if (angelID.matches("\\d{10,}.*")) {
+				new Popup(AlertType.ERROR, "Invalid ID",
+						"ID number can be at most 9 digits");
+				idInput.requestFocus();
+				return;
+			}
+
 			// Checking to see that a character was included, else an A is added
 			if (!angelID.matches(".*[a-zA-Z]+.*")) {
 				idInput.setText(angelID + "A");
@@ -101,7 +107,7 @@ public class AddController extends Controller {
 			}
 
 			// Checking to see if the angel id already exist in the database
-			if (dbController.contains(angelID, DBCollection.ANGELS)) {
+			if (repository.contains(angelID)) {
 				new Popup(AlertType.ERROR, "Invalid ID",
 						"Angel ID '" + angelID + "' already exists");
 				idInput.clear();
@@ -446,8 +452,7 @@ public class AddController extends Controller {
 
 		// The basic angel attributes
 		agl.addAttribute(Attribute.ID, idInput.getText().toUpperCase());
-		agl.addAttribute(Attribute.GENDER,
-				genderInput.getText().toUpperCase());
+		agl.addAttribute(Attribute.GENDER, Gender.parse(genderInput.getText()));
 		agl.addAttribute(Attribute.AGE, Integer.valueOf(ageInput.getText()));
 		agl.addAttribute(Attribute.SHOE_SIZE, shoeInput.getText());
 		agl.addAttribute(Attribute.CLOTHES_SIZE, clothesInput.getText());
@@ -470,13 +475,32 @@ public class AddController extends Controller {
 		agl.addAttribute(Attribute.LOCATION, "on_site");
 		
 		// Check to see if the angel insertion is successful
-		if (dbController.insertAngel(agl, DBCollection.ANGELS)) {
-			new Popup(AlertType.CONFIRMATION, "Successfully Added",
-					"Angel '" + idInput.getText() + "' was added successfully");
-		} else {
-			new Popup(AlertType.WARNING, "Error", "Angel could not be added");
-		}
-		resetInputs();
+		String id = idInput.getText().toUpperCase();
+		addAngelButton.setDisable(true);
+		super.onFXThread(repository.insertAsync(agl), outcome -> {
+			// The error was shown, the inputs are kept to add the angel again
+			if (outcome == null) {
+				addAngelButton.setDisable(false);
+				return;
+			}
+
+			switch (outcome) {
+			case INSERTED:
+				new Popup(AlertType.CONFIRMATION, "Successfully Added",
+						"Angel '" + id + "' was added successfully");
+				break;
+			case DUPLICATE:
+				// Another station added the same ID since it was validated
+				new Popup(AlertType.ERROR, "Invalid ID",
+						"Angel ID '" + id + "' already exists");
+				break;
+			default:
+				new Popup(AlertType.WARNING, "Error",
+						"Angel could not be added");
+				break;
+			}
+			resetInputs();
+		});
 	}
 
 	/**
@@ -17,10 +17,10 @@ package controllers.Angel;
 import java.util.List;
 
 import angels.Angel;
-import angels.Attribute;
 import controllers.Controller;
+import controllers.DebouncedLookup;
 import customFX.StatusButton;
-import database.DatabaseController;
+import database.AngelRepository;
 import displays.AngelDisplays;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -38,6 +38,9 @@ public class AngelSelectionController extends Controller {
 
 	private final int FONT_SIZE = 42;
 
+	// Milliseconds the ID must not change for before looking it up
+	private static final long LOOKUP_DELAY = 100;
+
 	@FXML
 	private Button clearButton, backButton;
 	@FXML
@@ -45,7 +48,8 @@ public class AngelSelectionController extends Controller {
 	@FXML
 	private BorderPane pane;
 
-	private DatabaseController dbController;
+	private AngelRepository repository;
+	private DebouncedLookup<Integer, List<Angel>> lookup;
 
 	/**
 	 * Constructor for the controller used to accept an angel id and display the
@@ -56,8 +60,11 @@ public class AngelSelectionController extends Controller {
 	 * @param collection The collection in which an angel will eventually be
 	 *                   added to.
 	 */
-	public AngelSelectionController(DatabaseController dbController) {
-		this.dbController = dbController;
+	public AngelSelectionController(AngelRepository repository) {
+		this.repository = repository;
+		this.lookup = new DebouncedLookup<>(LOOKUP_DELAY,
+				this.repository::lookupIDNumberAsync,
+				result -> pane.setCenter(generateAngelIDButtons(result)));
 	}
 
 	@FXML
@@ -78,7 +85,7 @@ public class AngelSelectionController extends Controller {
 		idLabel.setText(idLabel.getText() + selectedBtn.getText());
 
 		// Puts buttons, representing angels, with the same id as input value
-		pane.setCenter(generateAngelIDButtons(idLabel.getText()));
+		showAngelIDButtons(idLabel.getText());
 	}
 
 	/**
@@ -98,7 +105,7 @@ public class AngelSelectionController extends Controller {
 			backButton.fire(); // Calls updateIDLabelActionEvent()
 		else if (ke.getText().matches("\\d*")) { // Checks input is a number
 			idLabel.setText(idLabel.getText() + ke.getText());
-			pane.setCenter(generateAngelIDButtons(idLabel.getText()));
+			showAngelIDButtons(idLabel.getText());
 		}
 	}
 
@@ -107,6 +114,7 @@ public class AngelSelectionController extends Controller {
 	 */
 	public void clearButtonHandler() {
 		idLabel.clear();
+		lookup.cancel();
 		pane.setCenter(null);
 	}
 
@@ -119,38 +127,51 @@ public class AngelSelectionController extends Controller {
 					idLabel.getText().substring(0,
 							idLabel.getText().length() - 1));
 			// Create new buttons based off new value
-			pane.setCenter(generateAngelIDButtons(idLabel.getText()));
+			showAngelIDButtons(idLabel.getText());
 		}
 	}
 
 	/**
 	 * When the user puts in an angle id number, this method is responsible for
-	 * querying the database and finding all angels with the given id.
+	 * finding all angels with the given id. The lookup runs once the id stops
+	 * changing, reading the angels from memory where possible, otherwise
+	 * querying the database in the background, and the buttons are displayed
+	 * once the results are returned. Results of an id since changed are never
+	 * displayed.
 	 * 
 	 * @param angelID String representing the id of the angel to find within the
 	 *                database
-	 * @return
+	 */
+	private void showAngelIDButtons(String angelID) {
+		// Nothing to search for, the keypad only enters numbers
+		if (!angelID.matches("\\d{1,9}")) {
+			lookup.cancel();
+			pane.setCenter(null);
+			return;
+		}
+
+		// Searching for the angel id, replacing the search of the previous id
+		lookup.submit(Integer.valueOf(angelID));
+	}
+
+	/**
+	 * Creates a button for each of the angels found when searching for an
+	 * angel id. The selected angel is read again, as the angels shown may be
+	 * a few seconds behind the database.
+	 * 
+	 * @param result The angels that match the angel id input
 	 * @return A GridPane containing all the angels that match the angel id
 	 *         input.
 	 */
-	private GridPane generateAngelIDButtons(String angelID) {
-		// Searching for the angel id in database
-		String query = "FOR doc IN angels "
-				+ "FILTER LIKE(doc." + Attribute.ID
-				+ ", " + "'" + angelID + "_')" // Find id similar to input
-				+ " SORT doc." + Attribute.ID // Sort the ID, a -> z
-				+ " RETURN doc";
-		List<Angel> result = dbController.query(query);
-
-		// Creating the buttons corresponding to input id value. Done on
-		// Separate thread to prevent UI locking
+	private GridPane generateAngelIDButtons(List<Angel> result) {
+		// Creating the buttons corresponding to input id value
 		GridPane grid = new GridPane();
 		grid.setAlignment(Pos.CENTER);
 		grid.setHgap(10);
 		grid.setVgap(10);
 
 		// Do nothing if there are no results
-		if (result.size() == 0) {
+		if (result == null || result.size() == 0) {
 			Label label = new Label("No Results Found");
 			label.setFont(new Font(FONT_SIZE));
 			grid.add(label, 1, 1);
@@ -161,12 +182,13 @@ public class AngelSelectionController extends Controller {
 		for (int i = 0; i < result.size(); ++i) {
 			Angel angel = result.get(i);
 			StatusButton btn = new StatusButton(angel);
-			btn.setOnAction(e -> {
-				super.switchScene(AngelDisplays.ANGEL_STATUS);
-				StatusSelectController ssc = (StatusSelectController) AngelDisplays.ANGEL_STATUS
-						.getController();
-				ssc.setAngel(angel);
-			});
+			btn.setOnAction(e -> super.onFXThread(
+					repository.getAsync(angel.getKey()), current -> {
+						super.switchScene(AngelDisplays.ANGEL_STATUS);
+						StatusSelectController ssc = (StatusSelectController) AngelDisplays.ANGEL_STATUS
+								.getController();
+						ssc.setAngel(current == null ? angel : current);
+					}));
 			grid.add(btn, i % 3, i / 3); // GridPane is 3x3.
 		}
 		return grid;
@@ -11,11 +11,12 @@ import java.util.Map;
 
 import angels.Angel;
 import angels.Attribute;
+import angels.Gender;
 import angels.Status;
 import controllers.Controller;
 import customFX.Popup;
-import database.DBCollection;
-import database.DatabaseController;
+import database.AngelFilter;
+import database.AngelRepository;
 import displays.AngelDisplays;
 import export.ExcelSheet;
 import javafx.beans.value.ChangeListener;
@@ -38,8 +39,6 @@ import javafx.stage.DirectoryChooser;
 public class ExportController extends Controller {
 
 	private final int FONT_SIZE = 15;
-	private final String VAR_NAM = "doc";
-	private final String FILT_STR = "FILTER " + VAR_NAM + ".";
 
 	@FXML
 	private TextField filePath, fileName;
@@ -47,14 +46,20 @@ public class ExportController extends Controller {
 	private ComboBox<String> exportComboBox;
 	@FXML
 	private VBox attributesContainer, filterContainer;
+	@FXML
+	private Button exportButton;
 
-	private DatabaseController dbController;
+	private AngelRepository repository;
 
-	private Map<Attribute, String> filters = new HashMap<>();
+	// Value each attribute must be equal to, and the range of ages, for an
+	// angel to be exported
+	private Map<Attribute, Object> filters = new HashMap<>();
+	private String ageFrom = "";
+	private String ageTo = "";
 
-	public ExportController(DatabaseController dbController) {
+	public ExportController(AngelRepository repository) {
 
-		this.dbController = dbController;
+		this.repository = repository;
 	}
 
 	public void exportMasterList() {
@@ -71,10 +76,64 @@ public class ExportController extends Controller {
 				"Exporting - Please Wait.\nMessage will close when complete.");
 		alert.show();
 
-		// Getting all the angels from the database, sorted in ascending order
-		List<Angel> angelList = dbController.querySorted(
-				"FOR doc IN " + DBCollection.ANGELS.toString() + " RETURN doc");
+		// Lists to store each unique attribute
+		List<String> ids = new ArrayList<>();
+		List<String> genders = new ArrayList<>();
+		List<String> location = new ArrayList<>();
+		List<String> statusList = new ArrayList<>();
+
+		// Streaming all the angels from the database, sorted in ascending
+		// order, only the values needed for the sheet are kept
+		super.onFXThread(repository.scanAsync(new AngelFilter(), angel -> {
+			ids.add(angel.get(Attribute.ID) + "");
+			genders.add(angel.getGender() == null ? " "
+					: angel.getGender().name().substring(0, 1));
+			addStatusAndLocation(angel, statusList, location);
+		}), streamed -> {
+			if (streamed != null && streamed)
+				saveMasterList(ids, genders, location, statusList);
+			alert.close();
+		});
+	}
+
+	/**
+	 * Adds the master list status and location codes of the angel to the
+	 * lists.
+	 * 
+	 * @param angel      The angel being added to the master list
+	 * @param statusList The list of status codes
+	 * @param location   The list of location codes
+	 */
+	private void addStatusAndLocation(Angel angel, List<String> statusList,
+			List<String> location) {
+		Status status = angel.getStatus();
+
+		if (status == Status.HOLD || status == Status.COMPLETE) {
+			if (angel.get(Attribute.LOCATION).equals("on_site"))
+				location.add("X");
+			else
+				location.add("-1"); // Error code
+			statusList.add(status.toString().charAt(0) + "");
+		} else if (status == Status.PULL) {
+			statusList.add("P");
+			location.add("P");
+		} else {
+			statusList.add(" ");
+			location.add(" ");
+		}
+	}
 
+	/**
+	 * Creates the master list Excel sheet from the angel values and saves it
+	 * to the file path and name provided on the display.
+	 * 
+	 * @param ids        The angel IDs, sorted in ascending order
+	 * @param genders    The gender code of each angel
+	 * @param location   The location code of each angel
+	 * @param statusList The status code of each angel
+	 */
+	private void saveMasterList(List<String> ids, List<String> genders,
+			List<String> location, List<String> statusList) {
 		Map<Integer, Integer> colWidth = new LinkedHashMap<>();
 		colWidth.put(0, 1500);
 		colWidth.put(1, 800);
@@ -83,34 +142,6 @@ public class ExportController extends Controller {
 
 		// Creating a map to store all the values need for the excel sheet
 		Map<String, List<String>> values = new LinkedHashMap<>();
-
-		// Lists to store each unique attribute
-		List<String> ids = new ArrayList<>();
-		List<String> genders = new ArrayList<>();
-		List<String> location = new ArrayList<>();
-		List<String> statusList = new ArrayList<>();
-		Status status = null;
-		for (Angel angel : angelList) {
-			ids.add(angel.get(Attribute.ID) + "");
-			genders.add(angel.get(Attribute.GENDER).toString().toUpperCase()
-					.charAt(0) + "");
-
-			status = Status.valueOf(angel.get(Attribute.STATUS).toString());
-
-			if (status == Status.HOLD || status == Status.COMPLETE) {
-				if (angel.get(Attribute.LOCATION).equals("on_site"))
-					location.add("X");
-				else
-					location.add("-1"); // Error code
-				statusList.add(status.toString().charAt(0) + "");
-			} else if (status == Status.PULL) {
-				statusList.add("P");
-				location.add("P");
-			} else {
-				statusList.add(" ");
-				location.add(" ");
-			}
-		}
 		values.put(Attribute.ID.toString(), ids);
 		values.put(Attribute.GENDER.toString(), genders);
 		values.put(Attribute.LOCATION.toString(), location);
@@ -118,7 +149,6 @@ public class ExportController extends Controller {
 
 		ExcelSheet sheet = new ExcelSheet("Master List", values, colWidth);
 		sheet.save(filePath.getText() + "\\", fileName.getText());
-		alert.close();
 	}
 
 	public void exportHoldList() {
@@ -174,9 +204,7 @@ public class ExportController extends Controller {
 			public void changed(
 					ObservableValue<? extends String> observable,
 					String oldValue, String newValue) {
-				String filter = FILT_STR + Attribute.GENDER + " == '"
-						+ combo.getValue().toLowerCase() + "'";
-				filters.put(Attribute.GENDER, filter);
+				filters.put(Attribute.GENDER, Gender.parse(combo.getValue()));
 			}
 		});
 		return combo;
@@ -195,9 +223,7 @@ public class ExportController extends Controller {
 			public void changed(
 					ObservableValue<? extends String> observable,
 					String oldValue, String newValue) {
-				filters.put(Attribute.AGE,
-						formatAgeFilter(fromInput.getText(), null));
-				System.out.println(filters.get(Attribute.AGE));
+				ageFrom = fromInput.getText();
 			}
 		});
 
@@ -211,9 +237,7 @@ public class ExportController extends Controller {
 			public void changed(
 					ObservableValue<? extends String> observable,
 					String oldValue, String newValue) {
-				filters.put(Attribute.AGE,
-						formatAgeFilter(null, toInput.getText()));
-				System.out.println(filters.get(Attribute.AGE));
+				ageTo = toInput.getText();
 			}
 		});
 
@@ -224,47 +248,22 @@ public class ExportController extends Controller {
 		return box;
 	}
 
-	private String formatAgeFilter(String from, String to) {
-		String filterStart = FILT_STR + "AGE ";
-		if (filters.get(Attribute.AGE) == null) {
-			if (from != null && !from.equals("")) {
-				return filterStart + ">= " + from;
-			} else if (to != null && !to.equals("")) {
-				return filterStart + "<= " + to;
-			} else {
-				return "";
-			}
-		}
-
-		String ranges = filters.get(Attribute.AGE).replace("FILTER ", "");
-		ranges = ranges.replace(VAR_NAM + ".AGE ", "");
-
-		int andIdx = ranges.indexOf("&&");
-		String currFrom = "";
-		String currTo = "";
-
-		if (andIdx != -1) {
-			currFrom = ranges.substring(3, andIdx).trim();
-			currTo = ranges.substring(andIdx + 4).trim();
-		} else if (ranges.charAt(0) == '>') {
-			currFrom = ranges.substring(3).trim();
-		} else if (ranges.charAt(0) == '<') {
-			currTo = ranges.substring(3).trim();
-		}
-
-		if (from != null)
-			currFrom = from;
-		else if (to != null)
-			currTo = to;
-
-		if (currFrom.equals("") && !currTo.equals(""))
-			return "FILTER doc.AGE <= " + currTo;
-		else if (currTo.equals("") && !currFrom.equals(""))
-			return "FILTER doc.AGE >= " + currFrom;
-		else if (!currFrom.equals("") && !currTo.equals(""))
-			return "FILTER doc.AGE >= " + currFrom + " && doc.AGE <= " + currTo;
-		return "";
-
+	/**
+	 * Creates the filter of the angels to export from the filter inputs. Ages
+	 * that are not whole numbers are ignored.
+	 * 
+	 * @return The filter of the angels to export
+	 */
+	private AngelFilter createFilter() {
+		AngelFilter filter = new AngelFilter();
+		for (Map.Entry<Attribute, Object> entry : filters.entrySet())
+			filter.equalTo(entry.getKey(), entry.getValue());
+
+		if (ageFrom.trim().matches("\\d+"))
+			filter.atLeast(Attribute.AGE, Integer.valueOf(ageFrom.trim()));
+		if (ageTo.trim().matches("\\d+"))
+			filter.atMost(Attribute.AGE, Integer.valueOf(ageTo.trim()));
+		return filter;
 	}
 
 	private ComboBox<String> statusFilter() {
@@ -274,9 +273,7 @@ public class ExportController extends Controller {
 			public void changed(
 					ObservableValue<? extends String> observable,
 					String oldValue, String newValue) {
-				String filter = FILT_STR + Attribute.STATUS + " == '"
-						+ combo.getValue() + "'";
-				filters.put(Attribute.STATUS, filter);
+				filters.put(Attribute.STATUS, combo.getValue());
 			}
 		});
 		return combo;
@@ -293,9 +290,7 @@ public class ExportController extends Controller {
 			public void changed(
 					ObservableValue<? extends String> observable,
 					String oldValue, String newValue) {
-				String filter = FILT_STR + attribute.toString() + " == '"
-						+ field.getText() + "'";
-				filters.put(attribute, filter);
+				filters.put(attribute, field.getText());
 			}
 		});
 
@@ -419,55 +414,49 @@ public class ExportController extends Controller {
 			return;
 		}
 
-		StringBuilder builder = new StringBuilder();
 		String attributeNames = "";
+		List<Attribute> columns = new ArrayList<>();
 		for (Node node : attributesContainer.getChildren()) {
 			ComboBox<String> box = (ComboBox<String>) ((HBox) node)
 					.getChildren().get(0);
 			attributeNames += box.getValue().toUpperCase() + ",";
+			columns.add(Attribute
+					.valueOf(box.getValue().replace(" ", "_").toUpperCase()));
 		}
 
-		builder.append(attributeNames + "\n"); // Column headers for columns
-
-		String query = "FOR doc in angels\n ";
-		for (Attribute attr : filters.keySet()) {
-			query += filters.get(attr) + "\n ";
-		}
-		query += "RETURN doc";
+		AngelFilter filter = createFilter();
 
-		System.out.println(query);
-
-		List<Angel> result = dbController.query(query);
-		PrintWriter pw = null;
+		PrintWriter pw;
 		try {
 			pw = new PrintWriter(new File(
 					filePath.getText() + "\\" + fileName.getText()
 							+ ".csv"));
 		} catch (IOException e1) {
 			e1.printStackTrace();
+			return;
 		}
 
-		for (Angel angel : result) {
+		pw.write(attributeNames + "\n"); // Column headers for columns
+
+		// Each angel is written as soon as it is returned from the database
+		exportButton.setDisable(true);
+		super.onFXThread(repository.scanAsync(filter, angel -> {
 			String values = "";
-			for (Node node : attributesContainer.getChildren()) {
-				ComboBox<String> box = (ComboBox<String>) ((HBox) node)
-						.getChildren().get(0);
-				String strAtt = box.getValue().replace(" ", "_")
-						.toUpperCase();
-				Attribute attr = Attribute.valueOf(strAtt);
-				System.out.println("VALUE: " + angel.get(attr));
-				String value = formatString((String) angel.get(attr));
+			for (Attribute attr : columns) {
+				String value = formatString(String.valueOf(angel.get(attr)));
 				values += "=" + "\"" + value + "\",";
 			}
-			values += "\n";
-			builder.append(values);
-			values = "";
-		}
-		pw.write(builder.toString());
-		pw.close();
-		Alert alert = new Alert(AlertType.CONFIRMATION);
-		alert.setContentText("EXPORT SUCCESSFUL");
-		alert.showAndWait();
+			pw.write(values + "\n");
+		}), streamed -> {
+			pw.close();
+			exportButton.setDisable(false);
+			if (streamed == null || !streamed)
+				return;
+
+			Alert alert = new Alert(AlertType.CONFIRMATION);
+			alert.setContentText("EXPORT SUCCESSFUL");
+			alert.showAndWait();
+		});
 	}
 
 	private String formatString(String string) {
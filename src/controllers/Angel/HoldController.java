@@ -12,9 +12,13 @@
 
 package controllers.Angel;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import angels.Angel;
@@ -22,10 +26,9 @@ import angels.Attribute;
 import angels.Status;
 import controllers.Controller;
 import customFX.Popup;
-import database.DBCollection;
-import database.DatabaseController;
+import database.AngelRepository;
+import database.UpdateResult;
 import displays.AngelDisplays;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.control.Alert.AlertType;
@@ -41,15 +44,19 @@ import javafx.scene.text.FontWeight;
 
 public class HoldController extends Controller {
 
+	// Times the missing items are merged with those of another station before
+	// giving up, should the angel keep changing
+	private static final int MAX_MERGE_ATTEMPTS = 3;
+
 	@FXML
 	private Label angelIDLabel;
 	@FXML
 	private VBox selectionArea, selectedItemsVBox;
 	@FXML
-	private Button cancelButton;
+	private Button putOnHoldButton, cancelButton;
 
 	private Angel angel;
-	private DatabaseController dbController;
+	private AngelRepository repository;
 
 	/**
 	 * Constructor for the controller used to put an angel on hold.
@@ -57,8 +64,8 @@ public class HoldController extends Controller {
 	 * @param controller The database controller used to connect to the
 	 *                   database.
 	 */
-	public HoldController(DatabaseController dbController) {
-		this.dbController = dbController;
+	public HoldController(AngelRepository repository) {
+		this.repository = repository;
 	}
 
 	/**
@@ -219,75 +226,139 @@ public class HoldController extends Controller {
 	 */
 	@FXML
 	public void onHoldButtonHandler() {
-		// TODO: Figure out a way to insert an array into the database without
-		// have to convert the array into a string.
-		String missingItems = convertArrToStr(selectedItemsVBox.getChildren());
+		List<String> missingItems = getMissingItems(
+				selectedItemsVBox.getChildren());
+
+		// All the changes to the angel, applied at once
+		Map<Attribute, Object> changes = new EnumMap<>(Attribute.class);
 
-		// If no missingItems, [], ask if the item should be marked as complete
-		if (missingItems.equals("[]")) {
+		// If no missingItems, ask if the item should be marked as complete
+		if (missingItems.isEmpty()) {
 			String contentText = "This angel has nothing on hold.\n"
 					+ "Would you like to take off hold?";
 			Popup popup = new Popup(AlertType.INFORMATION, contentText,
 					ButtonType.YES, ButtonType.NO);
 
-			if (popup.getSelection() == ButtonType.YES) {
-				dbController.update((String) angel.get(Attribute.ID),
-						Attribute.STATUS, Status.FILLING, DBCollection.ANGELS);
-			}
+			if (popup.getSelection() == ButtonType.YES)
+				changes.put(Attribute.STATUS, Status.FILLING);
 		} else { // Missing items indicate that item needs to go on hold
-			dbController.update(
-					(String) angel.get(Attribute.ID),
-					Attribute.STATUS, Status.HOLD, DBCollection.ANGELS);
+			changes.put(Attribute.STATUS, Status.HOLD);
 		}
 
 		// Changing the missing items in the database to newly selected items
-		dbController.query(
-				"UPDATE {_key: '" + angel.get(Attribute.ID) + "'} WITH {'"
-						+ Attribute.MISSING + "':" + missingItems + "} "
-						+ "IN " + DBCollection.ANGELS);
+		changes.put(Attribute.MISSING, missingItems);
 
 		// Updating status to be 'on site', meaning main location
-		dbController.update(angel.get(Attribute.ID).toString(),
-				Attribute.LOCATION.toString(), "on_site", DBCollection.ANGELS);
-
-		List<Angel> updateAngel = dbController.query("FOR doc IN "
-				+ DBCollection.ANGELS
-				+ " FILTER doc.ID == '"
-				+ angel.get(Attribute.ID).toString() + "' LIMIT 1 RETURN doc");
-		angel = updateAngel.get(0);
+		changes.put(Attribute.LOCATION, "on_site");
 
-		cancelButton.fire();
+		// Only applied if no other station changed the angel since it was
+		// shown, otherwise the changes are merged with theirs and retried
+		putOnHoldButton.setDisable(true);
+		applyMerged(angel, changes, 0);
 	}
 
 	/**
-	 * TODO: TRY TO REMOVE THE NEED TO DO THIS IN THE FUTURE
+	 * Applies the changes in the background, only if the angel still has the
+	 * revision it was shown with. On a conflict the missing items are merged
+	 * with those of the other station and the changes applied again, at most
+	 * MAX_MERGE_ATTEMPTS times. A single Popup then shows the final outcome.
 	 * 
+	 * @param shown   The angel the changes were made to
+	 * @param changes The changes to apply, updated as they are merged
+	 * @param merges  The number of times the changes have been merged
+	 */
+	private void applyMerged(Angel shown, Map<Attribute, Object> changes,
+			int merges) {
+		super.onFXThread(repository.updateIfUnchangedAsync(shown, changes),
+				result -> {
+			if (result != null
+					&& result.getOutcome() == UpdateResult.Outcome.CONFLICT
+					&& merges < MAX_MERGE_ATTEMPTS) {
+				Angel current = result.getAngel();
+				mergeMissingItems(changes, shown, current);
+				applyMerged(current, changes, merges + 1);
+				return;
+			}
+			putOnHoldButton.setDisable(false);
+
+			// The error was shown while updating
+			if (result == null)
+				return;
+
+			if (result.getOutcome() == UpdateResult.Outcome.CONFLICT) {
+				new Popup(AlertType.ERROR, "Angel '" + angel.get(Attribute.ID)
+						+ "' keeps being changed by another station.\n"
+						+ "Please try again.");
+				angel = result.getAngel();
+			} else if (result.isUpdated()) {
+				angel = result.getAngel();
+				if (merges > 0)
+					new Popup(AlertType.WARNING,
+							"Angel '" + angel.get(Attribute.ID)
+									+ "' was also changed by another station",
+							"The missing items have been combined:\n"
+									+ changes.get(Attribute.MISSING));
+			}
+			cancelButton.fire();
+		});
+	}
+
+	/**
+	 * Merges the missing items selected by the user with the changes made by
+	 * another station. Items the user added or removed, compared with the
+	 * angel they were shown, are added to or removed from the current missing
+	 * items. The status is then set to match the merged items.
 	 * 
-	 * Converts an ObservableList<Node> into a string form usable by an arangodb
-	 * database query.
-	 * 
-	 * The string will have a form similar to the one as below, " marks not
-	 * included.
-	 * 
-	 * " ['item one', 'item two'] "
+	 * @param changes The changes of the user, updated with the merged items
+	 * @param shown   The angel as it was shown to the user
+	 * @param current The angel as changed by the other station
+	 */
+	@SuppressWarnings("unchecked")
+	private void mergeMissingItems(Map<Attribute, Object> changes, Angel shown,
+			Angel current) {
+		Set<String> before = new HashSet<>(missingItems(shown));
+		Set<String> selected = new HashSet<>(
+				(List<String>) changes.get(Attribute.MISSING));
+
+		Set<String> merged = new LinkedHashSet<>(missingItems(current));
+		for (String item : selected)
+			if (!before.contains(item))
+				merged.add(item);
+		for (String item : before)
+			if (!selected.contains(item))
+				merged.remove(item);
+
+		changes.put(Attribute.MISSING, new ArrayList<>(merged));
+		if (!merged.isEmpty())
+			changes.put(Attribute.STATUS, Status.HOLD);
+		else if (changes.get(Attribute.STATUS) == Status.HOLD)
+			changes.remove(Attribute.STATUS);
+	}
+
+	/**
+	 * @param angel The angel
+	 * @return The items the angel is missing, empty if there are none
+	 */
+	@SuppressWarnings("unchecked")
+	private List<String> missingItems(Angel angel) {
+		Object missing = angel.get(Attribute.MISSING);
+		if (missing instanceof List)
+			return (List<String>) missing;
+		return new ArrayList<>();
+	}
+
+	/**
+	 * Collects the text of each selected item Label, which represents the
+	 * items the angel is missing.
 	 * 
-	 * @param array ObservableList<?> that will be converted to a string
-	 * @return A string representation of the array
+	 * @param labels The Labels of the selected items
+	 * @return List of the missing items
 	 */
-	private String convertArrToStr(ObservableList<?> array) {
-		String strArray = "[";
-
-		if (array.size() == 0) {
-			strArray += "]";
-		} else {
-			for (int i = 0; i < array.size() - 1; ++i) {
-				String text = ((Label) array.get(i)).getText();
-				strArray += "'" + text + "', ";
-			}
-			String text = ((Label) array.get(array.size() - 1)).getText();
-			strArray += "'" + text + "']";
-		}
-		return strArray;
+	private List<String> getMissingItems(List<Node> labels) {
+		List<String> items = new ArrayList<>(labels.size());
+		for (Node label : labels)
+			items.add(((Label) label).getText());
+		return items;
 	}
 
 	/**
@@ -3,26 +3,25 @@
  */
 package controllers.Angel;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import angels.Angel;
 import angels.Attribute;
 import angels.Status;
 import controllers.Controller;
-import customFX.StatusButton;
-import database.DBCollection;
-import database.DatabaseController;
+import customFX.AngelGrid;
+import customFX.Popup;
+import database.AngelRepository;
 import displays.AngelDisplays;
 import displays.Display;
 import javafx.fxml.FXML;
-import javafx.geometry.Pos;
+import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
-import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextField;
-import javafx.scene.input.MouseButton;
-import javafx.scene.layout.GridPane;
-import javafx.scene.text.Font;
 
 public class RequestController extends Controller {
 
@@ -31,75 +30,86 @@ public class RequestController extends Controller {
 	@FXML
 	private Button listButton, backButton, lendButton;
 	@FXML
-	private ScrollPane scrollPane;
-	@FXML
-	private GridPane resultGrid;
+	private AngelGrid resultGrid;
 
-	private DatabaseController dbController;
+	private AngelRepository repository;
 
-	public RequestController(DatabaseController dbController) {
-		this.dbController = dbController;
+	public RequestController(AngelRepository repository) {
+		this.repository = repository;
 	}
 
-	public void generateList() {
-		// Getting angels in database that have not been started
-		String query = "FOR doc IN " + DBCollection.ANGELS + " FILTER doc."
-				+ Attribute.STATUS + " == '" + Status.NOT_STARTED + "' LIMIT "
-				+ angelRequest.getText() + " RETURN doc";
-		
-		scrollPane.setVisible(true);
-
-		resultGrid.getChildren().removeAll(resultGrid.getChildren());
-		createGridPane(dbController.query(query));
-
-		scrollPane.setContent(resultGrid);
-
+	/**
+	 * The code within this method runs after all FXML objects have been loaded
+	 */
+	public void initialize() {
+		// Go to the angel info display when an angel is pressed
+		resultGrid.setOnAngelSelected(angel -> {
+			super.switchScenePreserve(AngelDisplays.ANGEL_INFO_DISPLAY);
+			HoldController controller = (HoldController) AngelDisplays.ANGEL_INFO_DISPLAY
+					.getController();
+			controller.addAngel(angel);
+		});
 	}
 
-	private void createGridPane(List<Angel> results) {
-		// Display a unique message when there are no results
-		if (results == null || results.size() == 0) {
-			Label label = new Label("No Results Found");
-			label.setFont(new Font(42));
-			label.setAlignment(Pos.CENTER);
-			resultGrid.add(label, 0, 0);
-		}
-
-		// Creating a new button for each angel returned, allowing to view angel
-		for (int i = 0; i < results.size(); i++) {
-			Angel angel = results.get(i);
-			StatusButton btn = new StatusButton(angel, 32, 8);
-			btn.setOnMouseClicked(e -> {
-				if (e.getButton() == MouseButton.SECONDARY) {
-					results.remove(angel);
-					resultGrid.getChildren().remove(btn);
-				}
-				e.consume();
-			});
-			btn.setOnAction(e -> {
-				super.switchScenePreserve(AngelDisplays.ANGEL_INFO_DISPLAY);
-				HoldController controller = (HoldController) AngelDisplays.ANGEL_INFO_DISPLAY
-						.getController();
-				controller.addAngel(angel);
-			});
-
-			resultGrid.add(btn, i % 5, i / 5);
+	public void generateList() {
+		int numRequested;
+		try {
+			numRequested = Integer.valueOf(angelRequest.getText().trim());
+		} catch (NumberFormatException nfe) {
+			new Popup(AlertType.ERROR, "Invalid Number",
+					"Please enter the number of angels requested");
+			return;
 		}
 
+		// Getting angels in database that have not been started
+		listButton.setDisable(true);
+		super.onFXThread(repository.findByStatusAsync(Status.NOT_STARTED,
+				numRequested), results -> {
+			listButton.setDisable(false);
+			resultGrid.setVisible(true);
+
+			// Right clicking an angel removes it from the list
+			resultGrid.setAngels(results == null
+					? Collections.<Angel>emptyList() : results);
+		});
 	}
 
 	/**
-	 * 
+	 * Lends every listed angel to the requestee. All the angels are updated
+	 * with a single request.
 	 */
 	public void lendButtonController() {
-		for (int i = 0; i < resultGrid.getChildren().size(); ++i) {
-			StatusButton btn = (StatusButton) resultGrid.getChildren().get(i);
-			dbController.update(btn.getText(), Attribute.LOCATION,
-					requesteeField.getText(), DBCollection.ANGELS);
-			dbController.update(btn.getText(), Attribute.STATUS, Status.OUT,
-					DBCollection.ANGELS);
+		List<String> keys = new ArrayList<>();
+		for (Angel angel : resultGrid.getAngels())
+			keys.add(angel.getKey());
+
+		if (keys.isEmpty()) {
+			backButton.fire();
+			return;
 		}
-		backButton.fire();
+
+		Map<Attribute, Object> changes = new EnumMap<>(Attribute.class);
+		changes.put(Attribute.LOCATION, requesteeField.getText());
+		changes.put(Attribute.STATUS, Status.OUT);
+
+		lendButton.setDisable(true);
+		super.onFXThread(repository.updateAllAsync(keys,
+				changes), results -> {
+			lendButton.setDisable(false);
+			if (results == null)
+				return;
+
+			List<String> notLent = new ArrayList<>();
+			for (Map.Entry<String, Angel> result : results.entrySet())
+				if (result.getValue() == null)
+					notLent.add(result.getKey());
+
+			if (!notLent.isEmpty())
+				new Popup(AlertType.WARNING, "Angels Not Lent",
+						"The following angels could not be lent: "
+								+ String.join(", ", notLent));
+			backButton.fire();
+		});
 	}
 
 	public void previousDisplay() {
@@ -1,33 +1,38 @@
 package controllers.Angel;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import angels.Angel;
 import angels.Attribute;
 import controllers.Controller;
-import customFX.StatusButton;
-import database.DBCollection;
-import database.DatabaseController;
+import controllers.DebouncedLookup;
+import customFX.AngelGrid;
+import database.AngelRepository;
+import database.SearchCriterion;
 import displays.AngelDisplays;
 import displays.Display;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.fxml.FXML;
-import javafx.geometry.Pos;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
-import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextField;
-import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 
 public class SearchDisplayController extends Controller {
 
+	// Milliseconds a keyword must not change for before searching
+	private static final long SEARCH_DELAY = 300;
+
+	// Angels read at a time, more are read as the results are scrolled
+	private static final int PAGE_SIZE = 100;
+
 	@FXML
 	private TextField keywordTextField;
 	@FXML
@@ -37,19 +42,32 @@ public class SearchDisplayController extends Controller {
 	@FXML
 	private Button searchButton;
 	@FXML
-	private ScrollPane resultPane;
-	@FXML
-	private GridPane resultGridPane;
+	private AngelGrid resultGrid;
 	@FXML
 	private CheckBox exactMatchCheckBox;
 	@FXML
 	private Label resultsLabel;
-
-	private DatabaseController dbController;
-
-	public SearchDisplayController(DatabaseController dbController) {
-
-		this.dbController = dbController;
+	@FXML
+	private Label facetLabel;
+
+	private AngelRepository repository;
+	private DebouncedLookup<List<SearchCriterion>, List<Angel>> searcher;
+
+	// Criteria of the latest search, and of the results shown
+	private List<SearchCriterion> searched, shown;
+	// Criteria of the latest search from the Search button, the only search
+	// whose facets are counted, as counting reads every matching angel
+	private List<SearchCriterion> counted;
+	private boolean readingPage = false;
+	private boolean lastPage = true;
+
+	public SearchDisplayController(AngelRepository repository) {
+
+		this.repository = repository;
+		this.searcher = new DebouncedLookup<>(SEARCH_DELAY,
+				criteria -> this.repository.searchPageAsync(criteria, null,
+						PAGE_SIZE),
+				this::displayResults);
 	}
 
 	/**
@@ -57,7 +75,22 @@ public class SearchDisplayController extends Controller {
 	 */
 	public void initialize() {
 		populateComboBox(attributeComboBox);
-		resultPane.setVisible(false);
+		resultGrid.setVisible(false);
+
+		// Go to the angel info display when an angel is pressed
+		resultGrid.setOnAngelSelected(angel -> {
+			super.switchScenePreserve(AngelDisplays.ANGEL_INFO_DISPLAY);
+			AngelInfoController controller = (AngelInfoController) AngelDisplays.ANGEL_INFO_DISPLAY
+					.getController();
+			controller.addAngel(angel);
+		});
+		resultGrid.setOnEndReached(this::displayNextPage);
+		keywordTextField.textProperty()
+				.addListener((observable, old, text) -> searchAsTyped());
+		attributeComboBox.valueProperty()
+				.addListener((observable, old, value) -> searchAsTyped());
+		exactMatchCheckBox.selectedProperty()
+				.addListener((observable, old, selected) -> searchAsTyped());
 	}
 
 	@FXML
@@ -96,10 +129,14 @@ public class SearchDisplayController extends Controller {
 		TextField field = new TextField();
 		field.setPromptText("Keyword");
 		field.setFont(new Font(20));
+		field.textProperty()
+				.addListener((observable, old, text) -> searchAsTyped());
 
 		ComboBox<String> cb = new ComboBox<String>();
 		cb.setPromptText("Select Attribute");
 		populateComboBox(cb);
+		cb.valueProperty()
+				.addListener((observable, old, value) -> searchAsTyped());
 
 		Button addSearchBtn = new Button("+");
 		addSearchBtn.setFont(new Font(16));
@@ -129,59 +166,154 @@ public class SearchDisplayController extends Controller {
 
 	/*
 	 * When the user presses the 'Search' button at the top of the display then this
-	 * method is called.
+	 * method is called. Searching again replaces a search still running, as
+	 * only the results of the latest search are displayed.
 	 */
 	@FXML
 	public void search() {
-		String query = createSearchQuery();
+		List<SearchCriterion> criteria = createSearchCriteria();
 
-		if (query == null)
+		if (criteria == null)
 			return;
 
-		// Clearing the panes from the previous search result
-		resultPane.setVisible(true);
-		resultGridPane.getChildren().removeAll(resultGridPane.getChildren());
-
-		// Results of the query
-		List<Angel> results = dbController.querySorted(query);
+		resultsLabel.setText("SEARCHING...");
+		searched = criteria;
+		counted = criteria;
+		searcher.submitNow(criteria);
+	}
 
-		resultsLabel.setText("RESULTS - " + results.size() + " FOUND");
+	/**
+	 * Searches once the keywords, attributes or exact match stop changing, so
+	 * the results follow the keywords as they are typed. Clearing every
+	 * keyword cancels the search and clears the results.
+	 */
+	private void searchAsTyped() {
+		List<SearchCriterion> criteria = createSearchCriteria();
 
-		// Display a unique message when there are no results
-		if (results.size() == 0) {
-			Label label = new Label("No Results Found");
-			label.setFont(new Font(42));
-			label.setAlignment(Pos.CENTER);
-			resultGridPane.add(label, 0, 0);
+		if (criteria == null) {
+			searcher.cancel();
+			clearResults();
+			return;
 		}
 
-		// Creating a new button for each angel returned, allowing to view angel
-		for (int i = 0; i < results.size(); i++) {
-			Angel angel = results.get(i);
-			StatusButton btn = new StatusButton(angel, 32, 8);
-			// Go to HoldDisplay.fxml display when pressed
-			btn.setOnAction(e -> {
-				super.switchScenePreserve(AngelDisplays.ANGEL_INFO_DISPLAY);
-				AngelInfoController controller = (AngelInfoController) AngelDisplays.ANGEL_INFO_DISPLAY
-						.getController();
-				controller.addAngel(angel);
-			});
-
-			resultGridPane.add(btn, i % 4, i / 4);
-		}
+		resultsLabel.setText("SEARCHING...");
+		searched = criteria;
+		searcher.submit(criteria);
+	}
+
+	/**
+	 * Removes the results of the previous search, so none are shown while
+	 * there are no keywords. Pages still being read are not displayed.
+	 */
+	private void clearResults() {
+		searched = null;
+		shown = null;
+		counted = null;
+		readingPage = false;
+		lastPage = true;
+
+		resultGrid.setAngels(new ArrayList<>());
+		resultGrid.setVisible(false);
+		resultsLabel.setText("RESULTS");
+		facetLabel.setText("");
 	}
 
 	/**
-	 * Following method adds the filter contents given in the keyword inputs.
+	 * Displays the first page of angels returned from a search, replacing the
+	 * results of the previous search. Only the buttons of the angels scrolled
+	 * to are created.
 	 * 
-	 * Creates something like: FILTER CONTAINS(LOWER(doc.ID, LOWER(1A))) FILTER
-	 * CONTAINS(LOWER(doc.AGE, LOWER(10)))
+	 * @param results The first page of angels returned from the search
+	 */
+	private void displayResults(List<Angel> results) {
+		// Only the latest search is displayed, so these are its results
+		shown = searched;
+		readingPage = false;
+		lastPage = results == null || results.size() < PAGE_SIZE;
+
+		resultGrid.setVisible(true);
+		resultGrid.setAngels(results == null ? new ArrayList<>() : results);
+		updateResultsLabel(results == null);
+		displayFacets();
+	}
+
+	/**
+	 * Displays how many of the angels found have each status, gender, age
+	 * band and location, counted for every angel found rather than only the
+	 * pages read. Only counted for searches from the Search button, not for
+	 * each search as the keywords are typed.
+	 */
+	private void displayFacets() {
+		facetLabel.setText("");
+		if (shown == null || shown != counted)
+			return;
+
+		List<SearchCriterion> criteria = shown;
+		super.onFXThread(repository.countFacetsAsync(criteria), counts -> {
+			// A new search replaced the results while counting
+			if (criteria != shown || counts == null)
+				return;
+			facetLabel.setText(counts.getTotal() + " ANGELS FOUND\n"
+					+ counts);
+		});
+	}
+
+	/**
+	 * Reads and displays the next page of angels of the search shown, once
+	 * the last angels shown are scrolled to. The page starts after the last
+	 * angel shown.
+	 */
+	private void displayNextPage() {
+		if (readingPage || lastPage || resultGrid.getAngels().isEmpty())
+			return;
+
+		List<SearchCriterion> criteria = shown;
+		List<Angel> angels = resultGrid.getAngels();
+		String afterID = angels.get(angels.size() - 1).getKey();
+
+		readingPage = true;
+		super.onFXThread(repository.searchPageAsync(criteria, afterID,
+				PAGE_SIZE), page -> {
+			// A new search replaced the results while the page was read
+			if (criteria != shown)
+				return;
+			readingPage = false;
+
+			// Read again once scrolled to the end again
+			if (page == null)
+				return;
+			lastPage = page.size() < PAGE_SIZE;
+			resultGrid.addAngels(page);
+			updateResultsLabel(false);
+		});
+	}
+
+	/**
+	 * Shows the number of angels found, followed by a plus while more are
+	 * read as the results are scrolled.
+	 * 
+	 * @param failed True if the search was unsuccessful
+	 */
+	private void updateResultsLabel(boolean failed) {
+		if (failed)
+			resultsLabel.setText("RESULTS");
+		else
+			resultsLabel.setText("RESULTS - " + resultGrid.getAngels().size()
+					+ (lastPage ? "" : "+") + " FOUND");
+	}
+
+	/**
+	 * Following method creates the search criteria from the keyword inputs.
+	 * 
+	 * Creates something like: [{attribute: ID, keyword: 1A, exact: false},
+	 * {attribute: AGE, keyword: 10, exact: false}]
+	 * 
+	 * @return The search criteria. Null if no keywords were provided.
 	 */
 	@SuppressWarnings("unchecked")
-	private String createSearchQuery() {
-		String query = "FOR doc IN " + DBCollection.ANGELS;
+	private List<SearchCriterion> createSearchCriteria() {
+		List<SearchCriterion> criteria = new ArrayList<>();
 
-		boolean containsFilter = false; // If no filters null is returned
 		HBox keywordHBox;
 		TextField keywordTF; // First child in HBox
 		ComboBox<String> keywordCB; // Second child in HBox
@@ -198,22 +330,21 @@ public class SearchDisplayController extends Controller {
 			// Default of CB is ID
 			if (keywordCB.getValue() == null)
 				keywordCB.setValue("ID");
-			containsFilter = true;
 
 			// Only exact match on the ID search
-			if (keywordCB.getValue().equals("ID") && exactMatchCheckBox.isSelected()) {
-				query += " FILTER LIKE(LOWER(doc." + keywordCB.getValue() + "), LOWER('"
-						+ keywordTF.getText() + "_'))\n";
-			} else {
-				query += " FILTER CONTAINS(LOWER(doc." + keywordCB.getValue()
-						+ "), LOWER('" + keywordTF.getText() + "'))\n";
-			}
+			boolean exact = keywordCB.getValue().equals("ID")
+					&& exactMatchCheckBox.isSelected();
+
+			criteria.add(new SearchCriterion(
+					Attribute.valueOf(keywordCB.getValue()),
+					keywordTF.getText(), exact));
 		}
-		query += "SORT doc.ID ASC RETURN doc";
 
-		if (containsFilter)
-			return query;
-		return null;
+		// If no filters null is returned
+		if (criteria.isEmpty())
+			return null;
+
+		return criteria;
 	}
 
 	@FXML
@@ -7,6 +7,8 @@
  */
 package controllers.Angel;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
 
 import angels.Angel;
@@ -14,8 +16,7 @@ import angels.Attribute;
 import angels.Status;
 import controllers.Controller;
 import customFX.Popup;
-import database.DBCollection;
-import database.DatabaseController;
+import database.AngelRepository;
 import displays.AngelDisplays;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert.AlertType;
@@ -39,19 +40,19 @@ public class StatusSelectController extends Controller {
 
 	private Angel angel;
 
-	private DatabaseController dbController;
+	private AngelRepository repository;
+
+	// True while a change is being applied, so it is not applied twice
+	private boolean updating = false;
 
 	/**
 	 * Constructor for the controller used to change the status of an angel. The
 	 * types of status's can be found within the angels.Status package.
 	 * 
-	 * @param controller The database controller used to connect to the
-	 *                   database.
-	 * @param            DBCollections.ANGELS The DBCollections.ANGELS in which
-	 *                   an angel will eventually be added to.
+	 * @param repository The repository containing the angels
 	 */
-	public StatusSelectController(DatabaseController dbController) {
-		this.dbController = dbController;
+	public StatusSelectController(AngelRepository repository) {
+		this.repository = repository;
 	}
 
 	/**
@@ -65,13 +66,8 @@ public class StatusSelectController extends Controller {
 	 * @param angelToChange
 	 */
 	public void setAngel(Angel angelToChange) {
-		angel = angelToChange;
-
-		// Converts an Angel's string status to a STATUS object
-		Status status = Status.valueOf(angel.get(Attribute.STATUS).toString());
-
-		// Label below the scene title
-		angelIDLabel.setText(angel.get(Attribute.ID) + " - " + status);
+		showAngel(angelToChange);
+		Status status = angel.getStatus();
 
 		// Show warning if the angel is suppose to be pulled
 		if (status == Status.PULL) {
@@ -84,11 +80,24 @@ public class StatusSelectController extends Controller {
 			if (popup.getSelection() == ButtonType.NO)
 				super.switchScene(AngelDisplays.ANGEL_SELECTION);
 		}
+	}
 
-		// All items must be off hold before being able to set as complete
-		if (status == Status.HOLD)
-			completedButton.setDisable(true);
+	/**
+	 * Shows the ID and status of the angel, without the warning shown when
+	 * the angel is first selected.
+	 * 
+	 * @param angelToShow The angel the status is changed for
+	 */
+	private void showAngel(Angel angelToShow) {
+		angel = angelToShow;
+
+		Status status = angel.getStatus();
+
+		// Label below the scene title
+		angelIDLabel.setText(angel.get(Attribute.ID) + " - " + status);
 
+		// All items must be off hold before being able to set as complete
+		completedButton.setDisable(status == Status.HOLD);
 	}
 
 	@FXML
@@ -124,24 +133,17 @@ public class StatusSelectController extends Controller {
 		});
 		Optional<Pair<Boolean, Boolean>> result = dialog.showAndWait();
 		result.ifPresent(values -> {
-			// Updating the status of the angel to complete
-			dbController.update(angel.get(Attribute.ID).toString(),
-					Attribute.STATUS.toString(),
-					Status.COMPLETE.toString(),
-					DBCollection.ANGELS);
-
-			// Updating status to be 'on site', meaning main location
-			dbController.update(angel.get(Attribute.ID).toString(),
-					Attribute.LOCATION.toString(), "on_site",
-					DBCollection.ANGELS);
-
-			String todos = "TODO:";
-			if (!shoeCB.isSelected())
-				todos += " DECREASE SHOE INVENTORY BY 1\n";
-			if (!clothesCB.isSelected())
-				todos += " DECREASE CLOTHES INVENTORY BY 1\n";
-			new Popup("The angel status has been updated.\n" + todos);
-			super.switchScene(AngelDisplays.ANGEL_SELECTION);
+			// Updating the status of the angel to complete and the location
+			// to be 'on site', meaning main location
+			updateAngel(Status.COMPLETE, "on_site", () -> {
+				String todos = "TODO:";
+				if (!shoeCB.isSelected())
+					todos += " DECREASE SHOE INVENTORY BY 1\n";
+				if (!clothesCB.isSelected())
+					todos += " DECREASE CLOTHES INVENTORY BY 1\n";
+				new Popup("The angel status has been updated.\n" + todos);
+				super.switchScene(AngelDisplays.ANGEL_SELECTION);
+			});
 		});
 	}
 
@@ -173,14 +175,12 @@ public class StatusSelectController extends Controller {
 
 		// If YES on warning message, sets the status of angel to pull
 		if (popup.getSelection() == ButtonType.YES) {
-			dbController.update(
-					(String) angel.get(Attribute.ID),
-					Attribute.STATUS.toString(),
-					Status.PULL.toString(),
-					DBCollection.ANGELS);
-
-			new Popup("The angel status has been altered to:\n'PULL'");
-			super.switchScene(AngelDisplays.ANGEL_SELECTION);
+			Map<Attribute, Object> changes = new EnumMap<>(Attribute.class);
+			changes.put(Attribute.STATUS, Status.PULL);
+			applyChanges(changes, () -> {
+				new Popup("The angel status has been altered to:\n'PULL'");
+				super.switchScene(AngelDisplays.ANGEL_SELECTION);
+			});
 		}
 	}
 
@@ -190,19 +190,13 @@ public class StatusSelectController extends Controller {
 	 * button on the AngelStatus.fxml display.
 	 */
 	public void fillingHandler() {
-		// Change status to "Filling"
-		dbController.update((String) angel.get(Attribute.ID),
-				Attribute.STATUS.toString(),
-				Status.FILLING.toString(),
-				DBCollection.ANGELS);
-
-		// Updating status to be 'on site', meaning main location
-		dbController.update(angel.get(Attribute.ID).toString(),
-				Attribute.LOCATION.toString(), "on_site", DBCollection.ANGELS);
-
-		new Popup("The angel status has been altered to 'Filling'",
-				ButtonType.OK);
-		super.switchScene(AngelDisplays.ANGEL_SELECTION);
+		// Change status to "Filling" and location to be 'on site', meaning
+		// main location
+		updateAngel(Status.FILLING, "on_site", () -> {
+			new Popup("The angel status has been altered to 'Filling'",
+					ButtonType.OK);
+			super.switchScene(AngelDisplays.ANGEL_SELECTION);
+		});
 	}
 
 	@FXML
@@ -240,20 +234,82 @@ public class StatusSelectController extends Controller {
 		result.ifPresent(requestee -> {
 			// Only update if the user pressed okay
 			if (dialog.resultProperty().get() != null) {
-				System.out.println("updating");
-				// Update the status to out
-				dbController.update(angel.get(Attribute.ID).toString(),
-						Attribute.STATUS, Status.OUT, DBCollection.ANGELS);
-				// Update the location to be the requester
-				dbController.update(angel.get(Attribute.ID).toString(),
-						Attribute.LOCATION, requestee, DBCollection.ANGELS);
-				new Popup("Angel has been updated succesfully", ButtonType.OK);
-				super.switchScene(AngelDisplays.ANGEL_SELECTION);
+				// Update the status to out and location to be the requester
+				updateAngel(Status.OUT, requestee, () -> {
+					new Popup("Angel has been updated succesfully",
+							ButtonType.OK);
+					super.switchScene(AngelDisplays.ANGEL_SELECTION);
+				});
 			}
 		});
 
 	}
 
+	/**
+	 * Updates the status and location of the angel using a single request.
+	 * 
+	 * @param status    The new status of the angel
+	 * @param location  The new location of the angel
+	 * @param onUpdated Run on the JavaFX thread once the angel is updated
+	 */
+	private void updateAngel(Status status, String location,
+			Runnable onUpdated) {
+		Map<Attribute, Object> changes = new EnumMap<>(Attribute.class);
+		changes.put(Attribute.STATUS, status);
+		changes.put(Attribute.LOCATION, location);
+		applyChanges(changes, onUpdated);
+	}
+
+	/**
+	 * Applies the changes in the background, only if the angel has not been
+	 * changed by another station since it was shown. If it has, the current
+	 * status of the angel is shown so the user can select the status again
+	 * knowing the change made by the other station.
+	 * 
+	 * @param changes   Map of each attribute to update to its new value
+	 * @param onUpdated Run on the JavaFX thread once the angel is updated
+	 */
+	private void applyChanges(Map<Attribute, Object> changes,
+			Runnable onUpdated) {
+		if (updating)
+			return;
+
+		updating = true;
+		super.onFXThread(repository.updateIfUnchangedAsync(angel, changes),
+				result -> {
+			updating = false;
+
+			// The error was shown while updating
+			if (result == null)
+				return;
+
+			switch (result.getOutcome()) {
+			case UPDATED:
+				angel = result.getAngel();
+				onUpdated.run();
+				break;
+			case CONFLICT:
+				// Showing the current angel rather than the outdated one
+				Angel current = result.getAngel();
+				showAngel(current);
+				new Popup(AlertType.WARNING,
+						"Angel '" + current.get(Attribute.ID)
+								+ "' was changed by another station",
+						"It is now " + current.get(Attribute.STATUS) + " at "
+								+ current.get(Attribute.LOCATION)
+								+ ".\nSelect the status again to apply your"
+								+ " change.");
+				break;
+			case NOT_FOUND:
+				new Popup(AlertType.ERROR, "Angel '" + angel.get(Attribute.ID)
+						+ "' no longer exists");
+				break;
+			default:
+				break;
+			}
+		});
+	}
+
 	@FXML
 	/**
 	 * Handler to switch the display to the display that called this one.
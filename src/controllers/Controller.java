@@ -7,8 +7,14 @@
  */
 package controllers;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import customFX.Popup;
 import displays.Display;
 import displays.DisplayManager;
+import javafx.application.Platform;
+import javafx.scene.control.Alert.AlertType;
 import javafx.stage.Stage;
 
 public class Controller {
@@ -53,4 +59,29 @@ public class Controller {
 	protected Stage getDisplayStage() {
 		return DisplayManager.getStage();
 	}
+
+	/**
+	 * Waits for the background task to complete and then hands its result to
+	 * the action on the JavaFX thread. This allows for database calls to run
+	 * without locking the UI while still being able to update the display
+	 * with the results.
+	 * 
+	 * If the task fails, an error Popup is displayed and the action is called
+	 * with null, the same as an inconclusive database call.
+	 * 
+	 * @param task   The background task, usually a database call
+	 * @param action The action to run with the result on the JavaFX thread
+	 */
+	protected <T> void onFXThread(CompletableFuture<T> task,
+			Consumer<T> action) {
+		task.whenComplete((result, error) -> Platform.runLater(() -> {
+			if (error != null) {
+				new Popup(AlertType.ERROR, "Database Error",
+						String.valueOf(error.getMessage()));
+				action.accept(null);
+			} else {
+				action.accept(result);
+			}
+		}));
+	}
 }
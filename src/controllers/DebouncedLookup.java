@@ -0,0 +1,141 @@
+/**
+ * This class runs the lookups of a display as its input changes, such as the
+ * angels of the ID typed on the keypad. Input changing quickly is coalesced,
+ * the lookup only running once the input has not changed for the delay, so
+ * typing 1234 runs one lookup rather than four.
+ *
+ * Each new input supersedes the previous one. A lookup waiting for its delay
+ * is cancelled, and the result of a lookup already running is dropped, so the
+ * display only ever shows the result of the latest input, even if an earlier
+ * lookup returns after it.
+ *
+ * The methods are to be called from the JavaFX thread, the same thread the
+ * results are displayed on.
+ *
+ * @author Nicholas Kunzler
+ */
+package controllers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import customFX.Popup;
+import javafx.application.Platform;
+import javafx.scene.control.Alert.AlertType;
+
+public class DebouncedLookup<I, T> {
+
+	// Waits out the delay of every lookup, the lookups run on their own
+	private static final ScheduledExecutorService TIMER = Executors
+			.newSingleThreadScheduledExecutor(runnable -> {
+				// Daemon thread so waiting lookups never keep the application
+				// open
+				Thread thread = new Thread(runnable, "lookup-timer");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	private final long delay;
+	private final Function<I, CompletableFuture<T>> lookup;
+	private final Consumer<T> display;
+
+	// Incremented by each input, a result is only shown if still the latest
+	private long generation = 0;
+	private ScheduledFuture<?> waiting;
+	private CompletableFuture<T> running;
+
+	/**
+	 * @param delay   Milliseconds the input must not change for before the
+	 *                lookup runs
+	 * @param lookup  Starts the lookup of an input in the background, usually
+	 *                an asynchronous AngelRepository call
+	 * @param display Shows the result of the latest input on the JavaFX
+	 *                thread. Called with null if the lookup failed.
+	 */
+	public DebouncedLookup(long delay, Function<I, CompletableFuture<T>> lookup,
+			Consumer<T> display) {
+		if (delay < 0)
+			throw new IllegalArgumentException(
+					"Delay must not be negative: " + delay);
+		this.delay = delay;
+		this.lookup = lookup;
+		this.display = display;
+	}
+
+	/**
+	 * Looks up the input once it has not changed for the delay, superseding
+	 * any previous input.
+	 *
+	 * @param input The new input
+	 */
+	public void submit(I input) {
+		long current = supersede();
+		waiting = TIMER.schedule(() -> Platform.runLater(() -> {
+			if (current == generation)
+				start(input, current);
+		}), delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Looks up the input right away, superseding any previous input. Used when
+	 * the input is complete, such as when a search button is pressed.
+	 *
+	 * @param input The new input
+	 */
+	public void submitNow(I input) {
+		start(input, supersede());
+	}
+
+	/**
+	 * Cancels the lookup of the latest input, so no result is shown. Used
+	 * when the input is cleared.
+	 */
+	public void cancel() {
+		supersede();
+	}
+
+	/**
+	 * Cancels the waiting and running lookups of the previous input.
+	 *
+	 * @return The generation of the new input
+	 */
+	private long supersede() {
+		long current = ++generation;
+		if (waiting != null)
+			waiting.cancel(false);
+		if (running != null)
+			running.cancel(false);
+		waiting = null;
+		running = null;
+		return current;
+	}
+
+	/**
+	 * Starts the lookup and shows its result if the input was not superseded
+	 * while it ran.
+	 *
+	 * @param input   The input to look up
+	 * @param current The generation of the input
+	 */
+	private void start(I input, long current) {
+		waiting = null;
+		running = lookup.apply(input);
+		running.whenComplete((result, error) -> Platform.runLater(() -> {
+			if (current != generation)
+				return; // Superseded, a newer result is on the way
+			running = null;
+			if (error != null) {
+				new Popup(AlertType.ERROR, "Database Error",
+						String.valueOf(error.getMessage()));
+				display.accept(null);
+			} else {
+				display.accept(result);
+			}
+		}));
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Class to show a large number of angels as a grid of StatusButtons. Rather
+ * than creating a button for every angel, the grid is a ListView of rows,
+ * and only the rows currently visible are given buttons. Scrolling reuses the
+ * rows scrolled out of view, so a search returning thousands of angels shows
+ * as quickly as one returning a few.
+ *
+ * The angels can be added a page at a time. When the last row is shown, the
+ * end reached action is called so the next page can be read.
+ *
+ * The number of columns, and the size of the buttons, can be set within the
+ * FXML file, ex: <AngelGrid columns="4" buttonFontSize="32" />
+ *
+ * @author Nicholas Kunzler
+ */
+package customFX;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import angels.Angel;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.scene.text.Font;
+
+public class AngelGrid extends ListView<List<Angel>> {
+
+	private static final int FONT_SIZE = 42;
+	private static final int SPACING = 30;
+
+	private int columns = 4;
+	private int buttonFontSize = 32;
+	private int indicatorHeight = 8;
+	private boolean removable = false;
+
+	// Every angel of the grid, the rows are made from
+	private final List<Angel> angels = new ArrayList<>();
+
+	private Consumer<Angel> onSelected = angel -> {
+	};
+	private Runnable onEndReached = () -> {
+	};
+
+	public AngelGrid() {
+		super.setCellFactory(list -> new Row());
+		super.setFocusTraversable(false);
+
+		// Shown while the grid has no angels
+		Label label = new Label("No Results Found");
+		label.setFont(new Font(FONT_SIZE));
+		label.setAlignment(Pos.CENTER);
+		super.setPlaceholder(label);
+	}
+
+	/**
+	 * Replaces the angels of the grid and scrolls back to the top.
+	 *
+	 * @param angels The angels to show, in order
+	 */
+	public void setAngels(List<Angel> angels) {
+		this.angels.clear();
+		super.getItems().clear();
+		addAngels(angels);
+		super.scrollTo(0);
+	}
+
+	/**
+	 * Adds the angels after the angels already shown, such as the next page
+	 * of a search. Only the last row, if not full, is replaced.
+	 *
+	 * @param page The angels to add, in order
+	 */
+	public void addAngels(List<Angel> page) {
+		int first = angels.size() / columns;
+		angels.addAll(page);
+
+		List<List<Angel>> rows = new ArrayList<>();
+		for (int i = first * columns; i < angels.size(); i += columns)
+			rows.add(new ArrayList<>(angels.subList(i,
+					Math.min(i + columns, angels.size()))));
+
+		if (first < super.getItems().size())
+			super.getItems().remove(first, super.getItems().size());
+		super.getItems().addAll(rows);
+	}
+
+	/**
+	 * Removes the angel from the grid, moving each following angel back a
+	 * place.
+	 *
+	 * @param angel The angel to remove
+	 */
+	public void removeAngel(Angel angel) {
+		int index = angels.indexOf(angel);
+		if (index < 0)
+			return;
+
+		// Rows from the one holding the angel on are made again
+		List<Angel> following = new ArrayList<>(
+				angels.subList(index / columns * columns, angels.size()));
+		following.remove(angel);
+		angels.subList(index / columns * columns, angels.size()).clear();
+		addAngels(following);
+	}
+
+	/**
+	 * @return Every angel of the grid, in order
+	 */
+	public List<Angel> getAngels() {
+		return Collections.unmodifiableList(angels);
+	}
+
+	/**
+	 * @param onSelected Called with the angel when its button is pressed
+	 */
+	public void setOnAngelSelected(Consumer<Angel> onSelected) {
+		this.onSelected = onSelected;
+	}
+
+	/**
+	 * @param onEndReached Called when the last row is shown, such as to add
+	 *                     the next page of angels
+	 */
+	public void setOnEndReached(Runnable onEndReached) {
+		this.onEndReached = onEndReached;
+	}
+
+	/**
+	 * @param removable True if an angel is removed from the grid when its
+	 *                  button is right clicked
+	 */
+	public void setRemovable(boolean removable) {
+		this.removable = removable;
+	}
+
+	public boolean isRemovable() {
+		return removable;
+	}
+
+	/**
+	 * @param columns The number of buttons within each row
+	 */
+	public void setColumns(int columns) {
+		if (columns <= 0)
+			throw new IllegalArgumentException(
+					"Columns must be positive: " + columns);
+		this.columns = columns;
+
+		List<Angel> shown = new ArrayList<>(angels);
+		angels.clear();
+		super.getItems().clear();
+		addAngels(shown);
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public void setButtonFontSize(int buttonFontSize) {
+		this.buttonFontSize = buttonFontSize;
+	}
+
+	public int getButtonFontSize() {
+		return buttonFontSize;
+	}
+
+	public void setIndicatorHeight(int indicatorHeight) {
+		this.indicatorHeight = indicatorHeight;
+	}
+
+	public int getIndicatorHeight() {
+		return indicatorHeight;
+	}
+
+	/**
+	 * A row of the grid. Rows are reused as the grid is scrolled, each time
+	 * being given the buttons of the angels of the row now shown.
+	 */
+	private class Row extends ListCell<List<Angel>> {
+
+		private final HBox buttons = new HBox(SPACING);
+
+		@Override
+		protected void updateItem(List<Angel> row, boolean empty) {
+			super.updateItem(row, empty);
+			if (empty || row == null) {
+				super.setGraphic(null);
+				return;
+			}
+
+			buttons.getChildren().clear();
+			for (Angel angel : row) {
+				StatusButton btn = new StatusButton(angel, buttonFontSize,
+						indicatorHeight);
+				btn.setOnAction(e -> onSelected.accept(angel));
+				btn.setOnMouseClicked(e -> {
+					if (removable && e.getButton() == MouseButton.SECONDARY)
+						removeAngel(angel);
+					e.consume();
+				});
+				buttons.getChildren().add(btn);
+			}
+			super.setGraphic(buttons);
+
+			if (super.getIndex() == AngelGrid.this.getItems().size() - 1)
+				onEndReached.run();
+		}
+	}
+}
@@ -12,6 +12,7 @@ package customFX;
 
 import angels.Angel;
 import angels.Attribute;
+import angels.Gender;
 import angels.Status;
 import javafx.scene.control.Button;
 import javafx.scene.text.Font;
@@ -37,8 +38,7 @@ public class StatusButton extends Button {
 		// Coloring button depending on gender
 		String style = "";
 
-		String sex = (String) angel.get(Attribute.GENDER);
-		if (sex.equalsIgnoreCase("boy"))
+		if (angel.getGender() == Gender.BOY)
 			style = "-fx-background-color: lightblue;";
 		else
 			style = "-fx-background-color: lightpink;";
@@ -46,8 +46,7 @@ public class StatusButton extends Button {
 		// Setting the bars at top and bottom of button, indicates status
 		if (indicatorHeight > 0) {
 			String color = "transparent"; // Default color
-			Status angelStatus = Status
-					.valueOf(angel.get(Attribute.STATUS).toString());
+			Status angelStatus = angel.getStatus();
 			if (angelStatus == Status.HOLD)
 				color = "gold";
 			else if (angelStatus == Status.COMPLETE)
@@ -0,0 +1,177 @@
+/**
+ * This class is a bounded, in memory cache of angels keyed by the angel's
+ * document key. When the cache is full, the angel that has gone the longest
+ * without being used is removed.
+ * 
+ * Each cached angel holds the document revision it was read at, along with
+ * the time it was cached. Lookups pass the maximum age of the angels they
+ * accept, so an angel changed by another station is never served for longer
+ * than that. A cached angel is never replaced by an angel written before it,
+ * as a read started before a write may return after the written angel is
+ * cached. The cache also counts the number of lookups it was, and was not,
+ * able to serve.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import angels.Angel;
+
+public class AngelCache {
+
+	// A cached angel and the time it was cached
+	private static class Cached {
+		private final Angel angel;
+		private final long cachedAt;
+
+		private Cached(Angel angel) {
+			this.angel = angel;
+			this.cachedAt = System.currentTimeMillis();
+		}
+
+		private boolean isFresh(long maxAge) {
+			return System.currentTimeMillis() - cachedAt <= maxAge;
+		}
+	}
+
+	private final int capacity;
+	private final Map<String, Cached> angels;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * Creates an empty cache that holds at most the given number of angels.
+	 * 
+	 * @param capacity The maximum number of angels held by the cache
+	 */
+	public AngelCache(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException(
+					"Cache capacity must be positive: " + capacity);
+		this.capacity = capacity;
+
+		// Access ordered so the least recently used angel is removed first
+		angels = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Cached> e) {
+				return size() > AngelCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached angel with the key and counts the lookup as a hit or
+	 * miss. An angel cached longer than the maximum age is removed and counted
+	 * as a miss.
+	 * 
+	 * @param key    The document key of the angel
+	 * @param maxAge Milliseconds the angel may have been cached for
+	 * @return The cached angel. Null if the angel is not cached, or was
+	 *         cached too long ago.
+	 */
+	public synchronized Angel get(String key, long maxAge) {
+		Cached cached = fresh(key, maxAge);
+		if (cached == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return cached.angel;
+	}
+
+	/**
+	 * Returns whether the angel with the key is cached. Does not count as a
+	 * lookup.
+	 * 
+	 * @param key    The document key of the angel
+	 * @param maxAge Milliseconds the angel may have been cached for
+	 * @return True if the angel was cached within the maximum age; otherwise
+	 *         false is returned.
+	 */
+	public synchronized boolean contains(String key, long maxAge) {
+		return fresh(key, maxAge) != null;
+	}
+
+	/**
+	 * @param key    The document key of the angel
+	 * @param maxAge Milliseconds the angel may have been cached for
+	 * @return The angel cached within the maximum age. Null if there is none,
+	 *         an older angel is removed.
+	 */
+	private Cached fresh(String key, long maxAge) {
+		Cached cached = angels.get(key);
+		if (cached != null && !cached.isFresh(maxAge)) {
+			angels.remove(key);
+			return null;
+		}
+		return cached;
+	}
+
+	/**
+	 * Adds the angel to the cache, replacing any previously cached version
+	 * that was not written after it. Angels without a document key are
+	 * ignored.
+	 * 
+	 * @param angel The angel to cache
+	 */
+	public synchronized void put(Angel angel) {
+		String key = angel.getKey();
+		if (key == null)
+			return;
+
+		Cached cached = angels.get(key);
+		if (cached == null
+				|| angel.getUpdateStamp() >= cached.angel.getUpdateStamp())
+			angels.put(key, new Cached(angel));
+	}
+
+	/**
+	 * Removes the angel with the key from the cache.
+	 * 
+	 * @param key The document key of the angel
+	 */
+	public synchronized void invalidate(String key) {
+		angels.remove(key);
+	}
+
+	/**
+	 * Removes every angel from the cache.
+	 */
+	public synchronized void clear() {
+		angels.clear();
+	}
+
+	/**
+	 * @return The number of angels currently cached
+	 */
+	public synchronized int size() {
+		return angels.size();
+	}
+
+	/**
+	 * @return The number of lookups served from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return The number of lookups that were not cached
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "AngelCache[size=" + angels.size() + "/" + capacity + ", hits="
+				+ hits + ", misses=" + misses + "]";
+	}
+}
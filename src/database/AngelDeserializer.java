@@ -0,0 +1,70 @@
+/**
+ * This class builds angels directly from the VelocyPack documents returned by
+ * the database. Without it, each document is first read into a BaseDocument,
+ * a HashMap of every attribute, only to be copied into the Angel and thrown
+ * away.
+ *
+ * Registered with the driver by Database, so any query or lookup asking for
+ * the Angel class uses it.
+ *
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.arangodb.velocypack.VPackDeserializationContext;
+import com.arangodb.velocypack.VPackDeserializer;
+import com.arangodb.velocypack.VPackSlice;
+import com.arangodb.velocypack.exception.VPackException;
+
+import angels.Angel;
+
+public class AngelDeserializer implements VPackDeserializer<Angel> {
+
+	@Override
+	public Angel deserialize(VPackSlice parent, VPackSlice vpack,
+			VPackDeserializationContext context) throws VPackException {
+		Angel angel = new Angel();
+		Iterator<Map.Entry<String, VPackSlice>> attributes = vpack
+				.objectIterator();
+		while (attributes.hasNext()) {
+			Map.Entry<String, VPackSlice> attribute = attributes.next();
+			angel.set(attribute.getKey(),
+					toValue(attribute.getValue(), context));
+		}
+		return angel;
+	}
+
+	/**
+	 * Reads the value of an attribute. Lists of text, such as the wishes, are
+	 * read as an array rather than an ArrayList, as the angel keeps them as
+	 * an array.
+	 *
+	 * @param value   The VelocyPack value
+	 * @param context Reads values of any other type
+	 * @return The value of the attribute
+	 */
+	private Object toValue(VPackSlice value,
+			VPackDeserializationContext context) throws VPackException {
+		if (value.isNull())
+			return null;
+		if (value.isString())
+			return value.getAsString();
+		if (value.isInteger())
+			return value.getAsLong();
+		if (value.isArray()) {
+			String[] texts = new String[value.getLength()];
+			for (int i = 0; i < texts.length; ++i) {
+				VPackSlice element = value.get(i);
+				if (!element.isString())
+					return context.deserialize(value, Object.class);
+				texts[i] = element.getAsString();
+			}
+			return texts;
+		}
+		return context.deserialize(value, Object.class);
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * This class describes which angels to include when scanning the angels, such
+ * as only girls between the ages of 5 and 8. An angel is included only if it
+ * matches every condition of the filter. A filter with no conditions includes
+ * every angel.
+ * 
+ * Each value is sent to the database as a bind variable, so the values
+ * entered by the user are never part of the query itself.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import angels.Angel;
+import angels.Attribute;
+
+public class AngelFilter {
+
+	/**
+	 * The comparison between the value of the attribute and the condition.
+	 */
+	public enum Comparison {
+		EQUALS("=="), 	// Value is equal to the condition
+		AT_LEAST(">="), // Value is a number at least the condition
+		AT_MOST("<="); 	// Value is a number at most the condition
+
+		private final String operator;
+
+		private Comparison(String operator) {
+			this.operator = operator;
+		}
+	}
+
+	/**
+	 * A single condition that the value of an attribute must match.
+	 */
+	private static class Condition {
+		private final Attribute attribute;
+		private final Comparison comparison;
+		private final Object value;
+
+		private Condition(Attribute attribute, Comparison comparison,
+				Object value) {
+			this.attribute = attribute;
+			this.comparison = comparison;
+			this.value = value;
+		}
+	}
+
+	private final List<Condition> conditions = new ArrayList<>();
+
+	/**
+	 * Adds the condition that the attribute is equal to the value. Enums, such
+	 * as a Status, are compared as strings.
+	 * 
+	 * @param attribute The attribute of the angel
+	 * @param value     The value the attribute must be equal to
+	 * @return This filter, allowing conditions to be chained
+	 */
+	public AngelFilter equalTo(Attribute attribute, Object value) {
+		if (value instanceof Enum)
+			value = value.toString();
+		conditions.add(new Condition(attribute, Comparison.EQUALS, value));
+		return this;
+	}
+
+	/**
+	 * Adds the condition that the attribute is at least the value.
+	 * 
+	 * @param attribute The numeric attribute of the angel
+	 * @param value     The smallest value included
+	 * @return This filter, allowing conditions to be chained
+	 */
+	public AngelFilter atLeast(Attribute attribute, Number value) {
+		conditions.add(new Condition(attribute, Comparison.AT_LEAST, value));
+		return this;
+	}
+
+	/**
+	 * Adds the condition that the attribute is at most the value.
+	 * 
+	 * @param attribute The numeric attribute of the angel
+	 * @param value     The largest value included
+	 * @return This filter, allowing conditions to be chained
+	 */
+	public AngelFilter atMost(Attribute attribute, Number value) {
+		conditions.add(new Condition(attribute, Comparison.AT_MOST, value));
+		return this;
+	}
+
+	/**
+	 * @return True if the filter includes every angel
+	 */
+	public boolean isEmpty() {
+		return conditions.isEmpty();
+	}
+
+	/**
+	 * Returns whether the angel matches every condition of the filter.
+	 * 
+	 * @param angel The angel to check
+	 * @return True if the angel is included; otherwise false is returned.
+	 */
+	public boolean matches(Angel angel) {
+		for (Condition condition : conditions) {
+			Object value = angel.get(condition.attribute);
+			switch (condition.comparison) {
+			case EQUALS:
+				if (!equal(value, condition.value))
+					return false;
+				break;
+			case AT_LEAST:
+				if (!(value instanceof Number) || ((Number) value)
+						.doubleValue() < ((Number) condition.value).doubleValue())
+					return false;
+				break;
+			case AT_MOST:
+				if (!(value instanceof Number) || ((Number) value)
+						.doubleValue() > ((Number) condition.value).doubleValue())
+					return false;
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the values the same way the database does, where numbers are
+	 * equal regardless of their type, ex: 5 and 5L.
+	 */
+	private static boolean equal(Object value, Object expected) {
+		if (value instanceof Number && expected instanceof Number)
+			return ((Number) value).doubleValue() == ((Number) expected)
+					.doubleValue();
+		return Objects.equals(value, expected);
+	}
+
+	/**
+	 * @return The query returning the angels included by the filter, sorted
+	 *         by ID. The query uses the bind variables from bindVars().
+	 */
+	String toAql() {
+		if (conditions.isEmpty())
+			return QueryTemplate.ALL_ANGELS_BY_ID.toString();
+
+		StringBuilder aql = new StringBuilder("FOR doc IN @@collection ");
+		for (int i = 0; i < conditions.size(); ++i)
+			aql.append("FILTER doc.@attribute").append(i).append(' ')
+					.append(conditions.get(i).comparison.operator)
+					.append(" @value").append(i).append(' ');
+		return aql.append("SORT doc.ID_NUMBER, doc.ID_SUFFIX RETURN doc")
+				.toString();
+	}
+
+	/**
+	 * @param collection The collection containing the angels
+	 * @return The bind variables of the query returned by toAql()
+	 */
+	Map<String, Object> bindVars(DBCollection collection) {
+		Map<String, Object> bindVars = QueryTemplate.bindVars(
+				"@collection", collection);
+		for (int i = 0; i < conditions.size(); ++i) {
+			bindVars.put("attribute" + i,
+					conditions.get(i).attribute.toString());
+			bindVars.put("value" + i, conditions.get(i).value);
+		}
+		return bindVars;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder description = new StringBuilder("AngelFilter[");
+		for (Condition condition : conditions)
+			description.append(condition.attribute).append(' ')
+					.append(condition.comparison.operator).append(' ')
+					.append(condition.value).append(';');
+		return description.append(']').toString();
+	}
+}
@@ -0,0 +1,321 @@
+/**
+ * This interface is the store of angels used by the controllers. The
+ * controllers only depend on this interface, allowing the application to run
+ * against ArangoDB, through DatabaseController, or entirely in memory, through
+ * InMemoryAngelRepository, for benchmarks and runs without a database.
+ * 
+ * Angels are identified by their ID, which is also their key within the
+ * store. Lists of angels are returned in ascending order by ID, ex: 9A before
+ * 10A, unless stated otherwise.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import angels.Angel;
+import angels.Attribute;
+import angels.Status;
+
+public interface AngelRepository {
+
+	/**
+	 * Holds the repository used by the displays.
+	 */
+	class Instance {
+		private static AngelRepository repository = null;
+	}
+
+	/**
+	 * @return The repository used by the displays. Null if none has been set.
+	 */
+	static AngelRepository getInstance() {
+		if (Instance.repository == null)
+			System.err.println("AngelRepository has not yet been initialized.");
+		return Instance.repository;
+	}
+
+	/**
+	 * Sets the repository used by the displays. Must be called before the
+	 * displays are created.
+	 * 
+	 * @param repository The repository of angels
+	 */
+	static void setInstance(AngelRepository repository) {
+		Instance.repository = repository;
+	}
+
+	/**
+	 * Adds the angel to the store.
+	 * 
+	 * @param angel The angel to add
+	 * @return INSERTED if the angel was added, DUPLICATE if an angel with the
+	 *         same ID already exists, otherwise ERROR.
+	 */
+	InsertOutcome insert(Angel angel);
+
+	/**
+	 * Adds all of the angels to the store.
+	 * 
+	 * @param angels The angels to add
+	 * @return Map of each angel ID to the outcome of adding the angel, in the
+	 *         same order as the angels were provided.
+	 */
+	Map<String, InsertOutcome> insertAll(Collection<Angel> angels);
+
+	/**
+	 * @param id The ID of the angel
+	 * @return True if an angel with the ID exists; otherwise false is
+	 *         returned.
+	 */
+	boolean contains(String id);
+
+	/**
+	 * @param id The ID of the angel
+	 * @return The angel with the ID. Null if the angel does not exist.
+	 */
+	Angel get(String id);
+
+	/**
+	 * Returns the angels whose ID is the number followed by a single
+	 * character, ex: 12A and 12B for the number 12.
+	 * 
+	 * @param number The number at the start of the ID
+	 * @return The matching angels. Null if the lookup was unsuccessful.
+	 */
+	List<Angel> findByIDNumber(int number);
+
+	/**
+	 * Returns the angels whose ID is the number followed by a single
+	 * character, the same as findByIDNumber(), from memory where possible so
+	 * it can be called on every key press. The angels, such as their status,
+	 * may be a few seconds behind the store, so use get() for the current
+	 * angel once one is selected.
+	 * 
+	 * @param number The number at the start of the ID
+	 * @return The matching angels. Null if the lookup was unsuccessful.
+	 */
+	default List<Angel> lookupIDNumber(int number) {
+		return findByIDNumber(number);
+	}
+
+	/**
+	 * Returns a limited number of angels with the status, in no particular
+	 * order.
+	 * 
+	 * @param status The status of the angels
+	 * @param limit  The maximum number of angels returned
+	 * @return The matching angels. Null if the lookup was unsuccessful.
+	 */
+	List<Angel> findByStatus(Status status, int limit);
+
+	/**
+	 * Returns the angels matching every one of the search criteria.
+	 * 
+	 * @param criteria The criteria of the search
+	 * @return The matching angels. Null if the search was unsuccessful.
+	 */
+	List<Angel> search(List<SearchCriterion> criteria);
+
+	/**
+	 * Returns a page of the angels matching every one of the search criteria,
+	 * in ascending order by ID, ex: 9A before 10A. The next page is read by
+	 * passing the ID of the last angel of the page, so a large number of
+	 * results can be shown without reading them all at once.
+	 * 
+	 * @param criteria The criteria of the search
+	 * @param afterID  The ID the page starts after. Null for the first page.
+	 * @param limit    The maximum number of angels within the page
+	 * @return The matching angels, fewer than the limit on the last page.
+	 *         Null if the search was unsuccessful.
+	 */
+	List<Angel> searchPage(List<SearchCriterion> criteria, String afterID,
+			int limit);
+
+	/**
+	 * Counts the angels matching every one of the search criteria by status,
+	 * gender, age band and location, so the angels a search or export would
+	 * include can be seen before it is run. No criteria counts every angel.
+	 * 
+	 * @param criteria The criteria of the search
+	 * @return The counts of the matching angels. Null if the angels could
+	 *         not be counted.
+	 */
+	FacetCounts countFacets(List<SearchCriterion> criteria);
+
+	/**
+	 * Updates all the attributes of the angel with the new values. Either all
+	 * of the changes are applied or none are.
+	 * 
+	 * @param id      The ID of the angel
+	 * @param changes Map of each attribute to update to its new value
+	 * @return The angel with all of the changes applied. Null if the update
+	 *         was unsuccessful.
+	 */
+	Angel update(String id, Map<Attribute, Object> changes);
+
+	/**
+	 * Updates all the attributes of every angel with the new values.
+	 * 
+	 * @param ids     The IDs of the angels
+	 * @param changes Map of each attribute to update to its new value
+	 * @return Map of each ID, in the order provided, to the angel with all of
+	 *         the changes applied. An ID maps to null if the angel was not
+	 *         updated. Null if the update was unsuccessful.
+	 */
+	Map<String, Angel> updateAll(Collection<String> ids,
+			Map<Attribute, Object> changes);
+
+	/**
+	 * Applies all the changes to the angel only if it has not been changed
+	 * since it was read, using its revision. Unlike update(), a change made
+	 * by another station in the meantime is never overwritten.
+	 * 
+	 * @param angel   The angel as it was read, including its revision
+	 * @param changes Map of each attribute to update to its new value
+	 * @return UPDATED with the updated angel, CONFLICT with the current angel
+	 *         if it was changed since it was read, NOT_FOUND, or ERROR.
+	 */
+	UpdateResult updateIfUnchanged(Angel angel, Map<Attribute, Object> changes);
+
+	/**
+	 * @param id The ID of the angel
+	 * @return True if the angel was deleted; otherwise false is returned.
+	 */
+	boolean delete(String id);
+
+	/**
+	 * Returns the angels written at or after the update stamp, allowing a
+	 * copy of the angels to be kept current by fetching only what changed.
+	 * See DeltaSync.
+	 * 
+	 * @param stamp The update stamp, in milliseconds
+	 * @return The changed angels, oldest change first. Null if the angels
+	 *         could not be read.
+	 */
+	List<Angel> fetchChangedSince(long stamp);
+
+	/**
+	 * Passes each angel included by the filter to the consumer, one at a
+	 * time, without collecting the angels into a list.
+	 * 
+	 * @param filter   The angels to include
+	 * @param consumer Receives each of the included angels
+	 * @return True if every angel was scanned; otherwise false is returned.
+	 */
+	boolean scan(AngelFilter filter, Consumer<Angel> consumer);
+
+	/**
+	 * Runs the call on one of the worker threads of the repository so that
+	 * the calling thread, usually the JavaFX thread, is not blocked.
+	 * 
+	 * @param call The call to run
+	 * @return A CompletableFuture that completes with the result of the call
+	 */
+	<T> CompletableFuture<T> async(Supplier<T> call);
+
+	/**
+	 * Asynchronous version of insert(). See insert() for more information.
+	 */
+	default CompletableFuture<InsertOutcome> insertAsync(Angel angel) {
+		return async(() -> insert(angel));
+	}
+
+	/**
+	 * Asynchronous version of get(). See get() for more information.
+	 */
+	default CompletableFuture<Angel> getAsync(String id) {
+		return async(() -> get(id));
+	}
+
+	/**
+	 * Asynchronous version of findByIDNumber(). See findByIDNumber() for more
+	 * information.
+	 */
+	default CompletableFuture<List<Angel>> findByIDNumberAsync(int number) {
+		return async(() -> findByIDNumber(number));
+	}
+
+	/**
+	 * Asynchronous version of lookupIDNumber(). See lookupIDNumber() for more
+	 * information.
+	 */
+	default CompletableFuture<List<Angel>> lookupIDNumberAsync(int number) {
+		return async(() -> lookupIDNumber(number));
+	}
+
+	/**
+	 * Asynchronous version of findByStatus(). See findByStatus() for more
+	 * information.
+	 */
+	default CompletableFuture<List<Angel>> findByStatusAsync(Status status,
+			int limit) {
+		return async(() -> findByStatus(status, limit));
+	}
+
+	/**
+	 * Asynchronous version of search(). See search() for more information.
+	 */
+	default CompletableFuture<List<Angel>> searchAsync(
+			List<SearchCriterion> criteria) {
+		return async(() -> search(criteria));
+	}
+
+	/**
+	 * Asynchronous version of countFacets(). See countFacets() for more
+	 * information.
+	 */
+	default CompletableFuture<FacetCounts> countFacetsAsync(
+			List<SearchCriterion> criteria) {
+		return async(() -> countFacets(criteria));
+	}
+
+	/**
+	 * Asynchronous version of searchPage(). See searchPage() for more
+	 * information.
+	 */
+	default CompletableFuture<List<Angel>> searchPageAsync(
+			List<SearchCriterion> criteria, String afterID, int limit) {
+		return async(() -> searchPage(criteria, afterID, limit));
+	}
+
+	/**
+	 * Asynchronous version of updateAll(). See updateAll() for more
+	 * information.
+	 */
+	default CompletableFuture<Map<String, Angel>> updateAllAsync(
+			Collection<String> ids, Map<Attribute, Object> changes) {
+		return async(() -> updateAll(ids, changes));
+	}
+
+	/**
+	 * Asynchronous version of updateIfUnchanged(). See updateIfUnchanged()
+	 * for more information.
+	 */
+	default CompletableFuture<UpdateResult> updateIfUnchangedAsync(
+			Angel angel, Map<Attribute, Object> changes) {
+		return async(() -> updateIfUnchanged(angel, changes));
+	}
+
+	/**
+	 * Asynchronous version of scan(). See scan() for more information. The
+	 * consumer is called on a worker thread.
+	 */
+	default CompletableFuture<Boolean> scanAsync(AngelFilter filter,
+			Consumer<Angel> consumer) {
+		return async(() -> scan(filter, consumer));
+	}
+
+	/**
+	 * Releases the resources held by the repository. The repository can no
+	 * longer be used afterwards.
+	 */
+	void close();
+}
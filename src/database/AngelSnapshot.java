@@ -0,0 +1,319 @@
+/**
+ * This class is a local copy of every angel read from the database. While the
+ * database cannot be reached, the snapshot is used to answer the lookups
+ * needed to keep processing angels, such as finding angels by ID number, and
+ * writes that are waiting in the WriteJournal are applied to it.
+ * 
+ * Unlike the AngelCache, the snapshot is not bounded, as it must hold every
+ * angel to answer lookups. It is filled when the application starts and kept
+ * current by every query afterwards, along with the DeltaSync fetching the
+ * angels changed by other stations. While current, it answers the lookups of
+ * the displays without a query. Keyword searches are narrowed down with a
+ * KeywordIndex of the wishes, books and special requests, kept current with
+ * every angel added or removed.
+ * 
+ * Angels are kept in ascending order by ID, ex: 9A before 10A, so the angels
+ * of an ID number, as shown by the keypad, are found without reading the
+ * other angels.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import angels.Angel;
+import angels.Attribute;
+
+public class AngelSnapshot {
+
+	private final ConcurrentNavigableMap<String, Angel> angels = new ConcurrentSkipListMap<>(
+			Angel.ID_ORDER);
+	private final KeywordIndex keywords = new KeywordIndex();
+
+	// Incremented whenever an angel is added, changed or removed
+	private final AtomicLong version = new AtomicLong();
+
+	/**
+	 * Adds the angel to the snapshot, replacing any previous version that was
+	 * not written after it. A query started before a write may return after
+	 * the write, and must not undo it.
+	 * 
+	 * @param angel The angel read from the database
+	 */
+	public void put(Angel angel) {
+		String key = angel.getKey();
+		if (key == null)
+			return;
+
+		angels.compute(key, (k, previous) -> {
+			if (previous != null
+					&& angel.getUpdateStamp() < previous.getUpdateStamp())
+				return previous;
+
+			// Reading an angel again does not change it
+			if (previous == null
+					|| angel.getUpdateStamp() != previous.getUpdateStamp()
+					|| !Objects.equals(angel.getRevision(),
+							previous.getRevision()))
+				version.incrementAndGet();
+			return angel;
+		});
+		index(key);
+	}
+
+	/**
+	 * @param key The document key of the angel
+	 * @return The angel with the key. Null if the angel is not in the
+	 *         snapshot.
+	 */
+	public Angel get(String key) {
+		return angels.get(key);
+	}
+
+	/**
+	 * @param key The document key of the angel
+	 */
+	public void remove(String key) {
+		if (angels.remove(key) != null)
+			version.incrementAndGet();
+		index(key);
+	}
+
+	/**
+	 * Removes the angel if it was not written after it was deleted, such as
+	 * by being added again.
+	 * 
+	 * @param key       The document key of the angel
+	 * @param deletedAt The time, in milliseconds, the angel was deleted
+	 */
+	public void remove(String key, long deletedAt) {
+		boolean[] removed = { false };
+		angels.computeIfPresent(key, (k, angel) -> {
+			if (angel.getUpdateStamp() > deletedAt)
+				return angel;
+			removed[0] = true;
+			return null;
+		});
+		if (removed[0])
+			version.incrementAndGet();
+		index(key);
+	}
+
+	/**
+	 * Indexes the keywords of the angel with the key as it is now within the
+	 * snapshot. Reading the angel while holding the index means that when two
+	 * versions are added at once, the index ends with the version kept.
+	 * 
+	 * @param key The document key of the angel
+	 */
+	private void index(String key) {
+		synchronized (keywords) {
+			keywords.put(key, angels.get(key));
+		}
+	}
+
+	/**
+	 * @return The version of the snapshot, changed whenever an angel is
+	 *         added, changed or removed. Used to know whether results
+	 *         computed from the snapshot are still current.
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * @return The number of angels within the snapshot
+	 */
+	public int size() {
+		return angels.size();
+	}
+
+	/**
+	 * Returns the angels whose ID is the number followed by a single
+	 * character, ex: 12A and 12B for the number 12. See
+	 * QueryTemplate.ANGELS_BY_ID_NUMBER.
+	 * 
+	 * @param number The number at the start of the ID
+	 * @return The matching angels, sorted by ID
+	 */
+	public List<Angel> findByIDNumber(int number) {
+		List<Angel> results = new ArrayList<>();
+
+		// IDs with the number are next to each other, so only they are read
+		for (Angel angel : angels.tailMap(String.valueOf(number)).values()) {
+			if (angel.getIDNumber() != number)
+				break;
+			if (angel.getIDSuffix().length() == 1)
+				results.add(angel);
+		}
+		return results;
+	}
+
+	/**
+	 * Runs the registered query template against the snapshot. Only the
+	 * templates needed to keep processing angels are supported.
+	 * 
+	 * @param name     The name of the query template
+	 * @param bindVars The values for the bind variables within the template
+	 * @return The angels matching the query, sorted by ID. Null if the
+	 *         template is not supported.
+	 */
+	public List<Angel> query(String name, Map<String, Object> bindVars) {
+		QueryTemplate template;
+		try {
+			template = QueryTemplate.valueOf(name);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+
+		List<Angel> results = new ArrayList<>();
+		switch (template) {
+		case ANGEL_BY_ID:
+			Angel angel = angels.get(String.valueOf(bindVars.get("id")));
+			if (angel != null)
+				results.add(angel);
+			return results;
+		case ANGELS_BY_ID_NUMBER:
+			return findByIDNumber(
+					((Number) bindVars.get("number")).intValue());
+		case ALL_ANGELS_BY_ID:
+			results.addAll(angels.values());
+			return results;
+		case ANGELS_BY_STATUS:
+			String status = String.valueOf(bindVars.get("status"));
+			int limit = ((Number) bindVars.get("limit")).intValue();
+			for (Angel a : angels.values()) {
+				if (results.size() >= limit)
+					break;
+				if (status.equals(String.valueOf(a.get(Attribute.STATUS))))
+					results.add(a);
+			}
+			return results;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the angels matching every one of the search criteria. See
+	 * QueryTemplate.SEARCH_ANGELS. Only the angels the KeywordIndex finds may
+	 * match every keyword criterion are checked, all angels being checked if
+	 * no criterion can use the index.
+	 * 
+	 * @param criteria The criteria each angel must match
+	 * @return The matching angels, sorted by ID
+	 */
+	public List<Angel> search(List<SearchCriterion> criteria) {
+		return searchPage(criteria, null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a page of the angels matching every one of the search criteria,
+	 * in order by ID starting after the ID. See
+	 * AngelRepository.searchPage().
+	 * 
+	 * @param criteria The criteria each angel must match
+	 * @param afterID  The ID the page starts after. Null for the first page.
+	 * @param limit    The maximum number of angels within the page
+	 * @return The matching angels, sorted by ID
+	 */
+	public List<Angel> searchPage(List<SearchCriterion> criteria,
+			String afterID, int limit) {
+		Set<String> keys = candidates(criteria);
+		List<Angel> results = new ArrayList<>();
+
+		// Without candidates, angels are read in order from the ID on until
+		// the page is full
+		if (keys == null) {
+			Map<String, Angel> after = afterID == null ? angels
+					: angels.tailMap(afterID, false);
+			for (Angel angel : after.values()) {
+				if (results.size() >= limit)
+					break;
+				if (matches(angel, criteria))
+					results.add(angel);
+			}
+			return results;
+		}
+
+		for (String key : keys) {
+			Angel angel = angels.get(key);
+			if (angel != null && (afterID == null
+					|| Angel.ID_ORDER.compare(key, afterID) > 0)
+					&& matches(angel, criteria))
+				results.add(angel);
+		}
+		results.sort(Angel.BY_ID);
+		return results.size() <= limit ? results
+				: new ArrayList<>(results.subList(0, limit));
+	}
+
+	/**
+	 * Counts the angels matching every one of the search criteria by status,
+	 * gender, age band and location. See QueryTemplate.FACET_COUNTS.
+	 * 
+	 * @param criteria The criteria each angel must match
+	 * @return The counts of the matching angels
+	 */
+	public FacetCounts countFacets(List<SearchCriterion> criteria) {
+		FacetCounts counts = new FacetCounts();
+		for (Angel angel : search(criteria))
+			counts.add(angel);
+		return counts;
+	}
+
+	/**
+	 * Returns the keys of the angels that may match every criterion, found
+	 * with the KeywordIndex.
+	 * 
+	 * @param criteria The criteria each angel must match
+	 * @return The keys of the angels that may match. Null if no criterion
+	 *         can use the index, so every angel may match.
+	 */
+	private Set<String> candidates(List<SearchCriterion> criteria) {
+		Set<String> keys = null;
+		for (SearchCriterion criterion : criteria) {
+			Set<String> candidates = keywords.candidates(criterion);
+			if (candidates == null)
+				continue;
+			if (keys == null)
+				keys = new HashSet<>(candidates);
+			else
+				keys.retainAll(candidates);
+			if (keys.isEmpty())
+				break;
+		}
+		return keys;
+	}
+
+	/**
+	 * @param angel    The angel to check
+	 * @param criteria The criteria the angel must match
+	 * @return True if the angel matches every criterion
+	 */
+	private static boolean matches(Angel angel,
+			List<SearchCriterion> criteria) {
+		for (SearchCriterion criterion : criteria)
+			if (!criterion.matches(angel))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return Every angel within the snapshot, sorted by ID
+	 */
+	public Collection<Angel> values() {
+		return angels.values();
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * This class stops requests from being sent to a database server that is not
+ * responding. The circuit has three states:
+ * 
+ * CLOSED - Requests are sent as normal
+ * OPEN - Requests fail immediately without being sent
+ * HALF_OPEN - A single request is sent to test whether the server is back
+ * 
+ * The circuit opens once the number of failed requests in a row reaches the
+ * failure threshold. After the open duration a single test request is
+ * allowed; if it succeeds the circuit closes, otherwise it opens again.
+ * 
+ * Listeners are notified each time the state changes, allowing the state of
+ * the connection to be shown to the user.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, 	// Requests are sent as normal
+		OPEN, 		// Requests fail without being sent
+		HALF_OPEN; 	// A single request is testing the server
+	}
+
+	private final int failureThreshold;
+	private final long openDuration;
+	private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+
+	private State state = State.CLOSED;
+	private int failures = 0;
+	private long openedAt = 0;
+	private boolean testInProgress = false;
+
+	/**
+	 * @param policy The policy containing the failure threshold and the open
+	 *               duration of the circuit
+	 */
+	public CircuitBreaker(ResiliencePolicy policy) {
+		this.failureThreshold = policy.getFailureThreshold();
+		this.openDuration = policy.getOpenDuration();
+	}
+
+	/**
+	 * Returns whether a request may be sent to the server. When the circuit
+	 * has been open for the open duration, the circuit becomes half open and
+	 * only the first caller is allowed to send a request.
+	 * 
+	 * @return True if the request may be sent; otherwise false is returned.
+	 */
+	public boolean allowRequest() {
+		State changed = null;
+		boolean allowed;
+		synchronized (this) {
+			if (state == State.OPEN
+					&& System.currentTimeMillis() - openedAt >= openDuration) {
+				state = changed = State.HALF_OPEN;
+				testInProgress = false;
+			}
+
+			if (state == State.CLOSED) {
+				allowed = true;
+			} else if (state == State.HALF_OPEN && !testInProgress) {
+				testInProgress = true;
+				allowed = true;
+			} else {
+				allowed = false;
+			}
+		}
+		notifyListeners(changed);
+		return allowed;
+	}
+
+	/**
+	 * Records that the server responded to a request, closing the circuit.
+	 */
+	public void recordSuccess() {
+		State changed = null;
+		synchronized (this) {
+			failures = 0;
+			testInProgress = false;
+			if (state != State.CLOSED)
+				state = changed = State.CLOSED;
+		}
+		notifyListeners(changed);
+	}
+
+	/**
+	 * Records that the server did not respond to a request. The circuit opens
+	 * if the failure threshold is reached or if the failed request was testing
+	 * the server.
+	 */
+	public void recordFailure() {
+		State changed = null;
+		synchronized (this) {
+			failures++;
+			testInProgress = false;
+			if (state == State.HALF_OPEN
+					|| (state == State.CLOSED && failures >= failureThreshold)) {
+				state = changed = State.OPEN;
+				openedAt = System.currentTimeMillis();
+			}
+		}
+		notifyListeners(changed);
+	}
+
+	/**
+	 * @return The current state of the circuit
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Adds a listener that is called with the new state each time the state
+	 * of the circuit changes. The listener is called on the thread that sent
+	 * the request, which is usually not the JavaFX thread.
+	 * 
+	 * @param listener Receives the new state of the circuit
+	 */
+	public void addListener(Consumer<State> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Notifies each listener of the state change. Called outside of the lock
+	 * so a listener can never block other requests.
+	 * 
+	 * @param changed The new state, or null if the state did not change
+	 */
+	private void notifyListeners(State changed) {
+		if (changed == null)
+			return;
+
+		System.err.println("Database circuit is now " + changed);
+		for (Consumer<State> listener : listeners)
+			listener.accept(changed);
+	}
+}
@@ -0,0 +1,22 @@
+/**
+ * This exception is thrown, without a request being sent, when a database
+ * operation is attempted while the CircuitBreaker is open.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import com.arangodb.ArangoDBException;
+
+public class CircuitOpenException extends ArangoDBException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param operation Description of the operation that was not sent
+	 */
+	public CircuitOpenException(String operation) {
+		super("Database is unavailable, " + operation + " was not sent");
+	}
+}
@@ -1,14 +1,45 @@
+/**
+ * This class represents the collections within the database along with the
+ * indexes each collection requires. The indexes are created, if missing, when
+ * the collection is created at startup.
+ * 
+ * @author Nicholas Kunzler
+ */
+
 package database;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public enum DBCollection {
 	
-	ANGELS("angels"),
+	ANGELS("angels",
+			IndexSpec.persistent("ID"), 			// ID lookups
+			IndexSpec.persistent("ID_NUMBER", "ID_SUFFIX", "ID"), // Keypad, sorting
+			IndexSpec.persistent("STATUS"), 		// Request display
+			IndexSpec.persistent("LOCATION"), 		// Export location filter
+			IndexSpec.persistent("STATUS", "AGE"),	// Export status and age
+			IndexSpec.persistent("MISSING[*]"), 	// Items holding angels
+			IndexSpec.persistent("UPDATE_STAMP")), 	// Delta sync
+	DELETED_ANGELS("deleted_angels",
+			IndexSpec.persistent("UPDATE_STAMP")), 	// Delta sync
 	SHOES("shoes"),
 	CLOTHES("clothes");
 	
 	private String collectionName;
-	private DBCollection(String collectionName) {
+	private List<IndexSpec> indexes;
+
+	private DBCollection(String collectionName, IndexSpec... indexes) {
 		this.collectionName = collectionName;
+		this.indexes = Collections.unmodifiableList(Arrays.asList(indexes));
+	}
+
+	/**
+	 * @return The indexes that should exist on the collection
+	 */
+	public List<IndexSpec> getIndexes() {
+		return indexes;
 	}
 	
 	public String toString() {
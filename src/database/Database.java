@@ -2,40 +2,140 @@
  * Class responsible for basic ArangoDB operations. These operations include:
  * 
  * contains() - Determines weather a key exists within the database
- * insert() - Adds a new document to a desired collection
+ * get() - Returns the document with a key from a collection
  * delete() - Deletes a desired document from a collection
  * query() - Queries the database based off the AQL query language
+ * queryOnce() - Runs an AQL query that must not be repeated, such as an insert
+ * queryIfUnchanged() - Runs an AQL query that only writes unchanged documents
  * createCollection() - creates a collection within the database
  * createDatabase() - creates a database
+ * ensureIndex() - creates an index on a collection if it does not exist
+ * ensureAnalyzer() - creates a search analyzer if it does not exist
+ * ensureView() - creates a search view, or updates the collections it links
+ * explain() - Lists the steps the database will take to run a query
+ * 
+ * A single ArangoDB connection pool is created when the Database is
+ * constructed and is reused by every operation. The pool is only closed when
+ * shutdown() is called, which is done from DatabaseController.close().
+ * 
+ * Every request is sent through the ResiliencePolicy. Requests that are safe
+ * to repeat are retried when the server does not respond, and the
+ * CircuitBreaker fails requests immediately while the server is down. While
+ * the circuit is open, errors are logged rather than shown as a Popup.
  * 
  * @author Nicholas Kunzler
  */
 
 package database;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
 import com.arangodb.ArangoCursor;
 import com.arangodb.ArangoDB;
 import com.arangodb.ArangoDBException;
+import com.arangodb.entity.AqlExecutionExplainEntity;
+import com.arangodb.entity.AqlExecutionExplainEntity.ExecutionNode;
 import com.arangodb.entity.BaseDocument;
+import com.arangodb.model.AqlQueryExplainOptions;
+import com.arangodb.model.AqlQueryOptions;
+import com.arangodb.model.PersistentIndexOptions;
 
+import angels.Angel;
 import customFX.Popup;
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 
 public class Database {
 
+	// Error number returned when a view with the same name already exists
+	private static final int DUPLICATE_NAME = 1207;
+
+	// Error number returned when another write changed a document first
+	private static final int CONFLICT = 1200;
+
+	// Default connection pool settings used when none are provided
+	public static final int DEFAULT_MAX_CONNECTIONS = 8;
+	public static final long DEFAULT_CONNECTION_TTL = 5 * 60 * 1000; // 5 min
+	public static final int DEFAULT_TIMEOUT = 10 * 1000; // 10 seconds
+
 	private String dbName;
 	private ArangoDB arangoDB;
 
+	private final ResiliencePolicy policy;
+	private final CircuitBreaker circuitBreaker;
+
 	/**
-	 * TODO: Add error throwing 
+	 * Creates a database using the default connection pool settings.
 	 * 
 	 * @param dbName   The name of desired database
 	 * @param user     The username for the database
 	 * @param password The password for the database
 	 */
 	public Database(String dbName, String user, String password) {
+		this(dbName, user, password, DEFAULT_MAX_CONNECTIONS,
+				DEFAULT_CONNECTION_TTL, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Creates a database backed by a long lived pool of connections. The
+	 * connections are kept alive between operations and are only closed when
+	 * they have been idle for longer than the connection ttl or when
+	 * shutdown() is called.
+	 * 
+	 * @param dbName         The name of desired database
+	 * @param user           The username for the database
+	 * @param password       The password for the database
+	 * @param maxConnections The maximum number of pooled connections
+	 * @param connectionTtl  Milliseconds an idle connection is kept alive
+	 *                       before it is closed and reopened on demand
+	 * @param timeout        Milliseconds to wait for a response before the
+	 *                       request fails
+	 */
+	public Database(String dbName, String user, String password,
+			int maxConnections, long connectionTtl, int timeout) {
+		this(dbName, user, password, maxConnections, connectionTtl, timeout,
+				ResiliencePolicy.DEFAULT);
+	}
+
+	/**
+	 * Creates a database backed by a long lived pool of connections, handling
+	 * failed requests with the given policy. The timeout bounds each single
+	 * request, while the deadline of the policy bounds an operation including
+	 * all of its retries.
+	 * 
+	 * @param dbName         The name of desired database
+	 * @param user           The username for the database
+	 * @param password       The password for the database
+	 * @param maxConnections The maximum number of pooled connections
+	 * @param connectionTtl  Milliseconds an idle connection is kept alive
+	 *                       before it is closed and reopened on demand
+	 * @param timeout        Milliseconds to wait for a response before the
+	 *                       request fails
+	 * @param policy         How failed requests are retried and when the
+	 *                       circuit opens
+	 */
+	public Database(String dbName, String user, String password,
+			int maxConnections, long connectionTtl, int timeout,
+			ResiliencePolicy policy) {
 		this.dbName = dbName;
-		arangoDB = new ArangoDB.Builder().user(user).password(password).build();
+		this.policy = policy;
+		this.circuitBreaker = new CircuitBreaker(policy);
+		arangoDB = new ArangoDB.Builder()
+				.user(user)
+				.password(password)
+				.maxConnections(maxConnections)
+				.connectionTtl(connectionTtl)
+				.timeout(timeout)
+				.registerDeserializer(Angel.class, new AngelDeserializer())
+				.build();
 		createDatabase();
 	}
 
@@ -49,37 +149,28 @@ public class Database {
 	 *         false is returned.
 	 */
 	protected boolean contains(String key, String collection) {
-		boolean contains = arangoDB.db(dbName).collection(collection)
-				.documentExists(key);
-		arangoDB.shutdown();
-		return contains;
+		return call("contains " + key, true, () -> arangoDB.db(dbName)
+				.collection(collection).documentExists(key));
 	}
 
 	/**
-	 * Inserts a new document within the given collection. The document is based
-	 * off the parameters, key and attributes.
+	 * Returns the document with the given key from the collection.
 	 * 
-	 * @param key        The unique key assigned with the document
-	 * @param attributes The attributes associated with said key
-	 * @param collection The collection in which the document will be placed
-	 * @return True if the document was successfully added; otherwise false is
-	 *         returned.
+	 * @param key        The key of the document
+	 * @param collection The collection containing the document
+	 * @param type       The class the document is read as, ex: Angel
+	 * @return The document with the key. Null if the document does not exist
+	 *         or could not be read.
 	 */
-	protected boolean insert(String key, BaseDocument object,
-			String collection) {
-		if (!contains(key, collection)) {
-			try {
-				arangoDB.db(dbName).collection(collection)
-						.insertDocument(object);
-			} catch (ArangoDBException e) {
-				new Popup(Alert.AlertType.ERROR, e.getException(),
-						"Internal database error occured when inserting");
-			}
-			arangoDB.shutdown();
-			return true;
+	protected <T> T get(String key, String collection, Class<T> type) {
+		try {
+			return call("get " + key, true, () -> arangoDB.db(dbName)
+					.collection(collection).getDocument(key, type));
+		} catch (ArangoDBException e) {
+			showError(e,
+					"Internal database error occured when reading " + key);
+			return null;
 		}
-
-		return false;
 	}
 
 	/**
@@ -91,13 +182,13 @@ public class Database {
 	 */
 	protected boolean delete(String key, String collection) {
 		try {
-			arangoDB.db(dbName).collection(collection).deleteDocument(key);
-			arangoDB.shutdown();
+			// Not retried, as a repeated delete fails once the key is gone
+			call("delete " + key, false, () -> arangoDB.db(dbName)
+					.collection(collection).deleteDocument(key));
 			return true;
 		} catch (ArangoDBException e) {
-			new Popup(Alert.AlertType.ERROR, e.getException(),
+			showError(e,
 					"Internal database error occured when deleting");
-			arangoDB.shutdown();
 			return false;
 		}
 	}
@@ -111,15 +202,136 @@ public class Database {
 	 *         query could not be executed, null is returned.
 	 */
 	protected ArangoCursor<BaseDocument> query(String query) {
+		return query(query, null);
+	}
+
+	/**
+	 * Queries the ArangoDB with the specified query template. The values
+	 * within the query are provided through the bind variables so that the
+	 * same query string can be sent for every call.
+	 * 
+	 * @param query    The query template, containing bind variables such as
+	 *                 the key, @key, or the collection, @@collection
+	 * @param bindVars The values of the bind variables within the query. Null
+	 *                 if the query has no bind variables.
+	 * @return ArangoCursor list containing the contents of the query. If the
+	 *         query could not be executed, null is returned.
+	 */
+	protected ArangoCursor<BaseDocument> query(String query,
+			Map<String, Object> bindVars) {
+		return query(query, bindVars, BaseDocument.class);
+	}
+
+	/**
+	 * Queries the ArangoDB with the specified query template, reading each
+	 * result as the given type, ex: Angel.
+	 * 
+	 * @param query    The query template, containing bind variables such as
+	 *                 the key, @key, or the collection, @@collection
+	 * @param bindVars The values of the bind variables within the query. Null
+	 *                 if the query has no bind variables.
+	 * @param type     The class each result is read as
+	 * @return ArangoCursor list containing the contents of the query. If the
+	 *         query could not be executed, null is returned.
+	 */
+	protected <T> ArangoCursor<T> query(String query,
+			Map<String, Object> bindVars, Class<T> type) {
+		// Queries are retried as each query either reads documents or sets
+		// attributes to fixed values, which is safe to repeat
 		try {
-			ArangoCursor<BaseDocument> cursor = arangoDB.db(dbName).query(query,
-					BaseDocument.class);
-			arangoDB.shutdown();
-			return cursor;
+			return call("query", true, () -> arangoDB.db(dbName).query(query,
+					bindVars, null, type));
 		} catch (ArangoDBException c) {
-			new Popup(Alert.AlertType.ERROR, c.getException(),
+			showError(c,
+					"Internal database error occured when querying:\n" + query);
+			return null;
+		}
+	}
+
+	/**
+	 * Queries the ArangoDB with the specified query template, sending it only
+	 * once. Used for queries whose effect changes when they are repeated,
+	 * such as inserts. A query that timed out may have been run, so running
+	 * it again could report its own changes as a failure.
+	 * 
+	 * @param query    The query template, containing bind variables such as
+	 *                 the key, @key, or the collection, @@collection
+	 * @param bindVars The values of the bind variables within the query
+	 * @param type     The class each result is read as
+	 * @return ArangoCursor list containing the contents of the query. If the
+	 *         query could not be executed, null is returned.
+	 */
+	protected <T> ArangoCursor<T> queryOnce(String query,
+			Map<String, Object> bindVars, Class<T> type) {
+		try {
+			return call("query", false, () -> arangoDB.db(dbName).query(query,
+					bindVars, null, type));
+		} catch (ArangoDBException c) {
+			showError(c,
+					"Internal database error occured when querying:\n" + query);
+			return null;
+		}
+	}
+
+	/**
+	 * Queries the ArangoDB with a query template that only changes documents
+	 * that have not been changed since they were read, sending it only once
+	 * as with queryOnce(). Repeating the query after it timed out would find
+	 * the document changed by the query itself.
+	 * 
+	 * A write changing the same document while the query runs is thrown
+	 * rather than shown, so the caller can read the document again and
+	 * report the conflict.
+	 * 
+	 * @param query    The query template, containing bind variables such as
+	 *                 the key, @key, or the collection, @@collection
+	 * @param bindVars The values of the bind variables within the query
+	 * @param type     The class each result is read as
+	 * @return ArangoCursor list containing the contents of the query. If the
+	 *         query could not be executed, null is returned.
+	 * @throws WriteConflictException If another write changed the document
+	 *                                while the query was running
+	 */
+	protected <T> ArangoCursor<T> queryIfUnchanged(String query,
+			Map<String, Object> bindVars, Class<T> type) {
+		try {
+			return call("query", false, () -> arangoDB.db(dbName).query(query,
+					bindVars, null, type));
+		} catch (ArangoDBException c) {
+			if (c.getErrorNum() != null && c.getErrorNum() == CONFLICT)
+				throw new WriteConflictException(c);
+			showError(c,
+					"Internal database error occured when querying:\n" + query);
+			return null;
+		}
+	}
+
+	/**
+	 * Queries the ArangoDB with the specified query template using a stream
+	 * cursor. Rather than the database creating the entire result before
+	 * returning, the results are created and returned in batches as the
+	 * cursor is iterated. This keeps memory use flat for large results.
+	 * 
+	 * The returned cursor must be closed once it is no longer needed.
+	 * 
+	 * @param query     The query template
+	 * @param bindVars  The values of the bind variables within the query. Null
+	 *                  if the query has no bind variables.
+	 * @param batchSize The number of documents returned by each request
+	 * @param type      The class each result is read as, ex: Angel
+	 * @return ArangoCursor that fetches the results of the query in batches.
+	 *         If the query could not be executed, null is returned.
+	 */
+	protected <T> ArangoCursor<T> stream(String query,
+			Map<String, Object> bindVars, int batchSize, Class<T> type) {
+		AqlQueryOptions options = new AqlQueryOptions().stream(true)
+				.batchSize(batchSize);
+		try {
+			return call("query", true, () -> arangoDB.db(dbName).query(query,
+					bindVars, options, type));
+		} catch (ArangoDBException c) {
+			showError(c,
 					"Internal database error occured when querying:\n" + query);
-			arangoDB.shutdown();
 			return null;
 		}
 	}
@@ -136,14 +348,24 @@ public class Database {
 	 *         false is returned.
 	 */
 	protected boolean createCollection(String name) {
-		if (!arangoDB.db(dbName).collection(name).exists()) {
+		boolean exists;
+		try {
+			exists = call("check collection " + name, true,
+					() -> arangoDB.db(dbName).collection(name).exists());
+		} catch (ArangoDBException e) {
+			showError(e, "Internal database error occured when checking for "
+					+ "a collection named:\n" + name);
+			return false;
+		}
+
+		if (!exists) {
 			// The collection does not exist so try to create it
 			try {
-				arangoDB.db(dbName).createCollection(name);
-				arangoDB.shutdown();
+				call("create collection " + name, false,
+						() -> arangoDB.db(dbName).createCollection(name));
 				return true;
 			} catch (ArangoDBException e) {
-				new Popup(Alert.AlertType.ERROR, e.getException(),
+				showError(e,
 						"Internal database error occured when creating a collection named:\n"
 								+ name);
 			}
@@ -151,20 +373,148 @@ public class Database {
 		return false;
 	}
 
+	/**
+	 * Creates the index on the collection if an identical index does not
+	 * already exist. Calling this method multiple times with the same index
+	 * has no effect.
+	 * 
+	 * @param collection The collection to index
+	 * @param index      The description of the index
+	 * @return True if the index exists on the collection; otherwise false is
+	 *         returned.
+	 */
+	protected boolean ensureIndex(String collection, IndexSpec index) {
+		try {
+			call("ensure index " + index, true, () -> arangoDB.db(dbName)
+					.collection(collection).ensurePersistentIndex(
+							index.getFields(),
+							new PersistentIndexOptions().unique(index.isUnique())
+									.sparse(index.isSparse())));
+			return true;
+		} catch (ArangoDBException e) {
+			showError(e,
+					"Internal database error occured when creating the index "
+							+ index + " on:\n" + collection);
+			return false;
+		}
+	}
+
+	/**
+	 * Creates the search analyzer if it does not already exist. Creating an
+	 * analyzer with the same name and definition as an existing one has no
+	 * effect, so the definition is sent on every call.
+	 * 
+	 * The driver has no calls for analyzers, so the request is sent to the
+	 * HTTP API of the database.
+	 * 
+	 * @param definition The name, type and properties of the analyzer
+	 * @return True if the analyzer exists; otherwise false is returned.
+	 */
+	protected boolean ensureAnalyzer(Map<String, Object> definition) {
+		try {
+			call("ensure analyzer " + definition.get("name"), true,
+					() -> arangoDB.db(dbName).route("/_api/analyzer")
+							.withBody(definition).post());
+			return true;
+		} catch (ArangoDBException e) {
+			showError(e, "Internal database error occured when creating the "
+					+ "analyzer:\n" + definition.get("name"));
+			return false;
+		}
+	}
+
+	/**
+	 * Creates the ArangoSearch view linked to the collections, or, if the view
+	 * already exists, sets the collections and attributes it links to. Calling
+	 * this method multiple times with the same links has no effect.
+	 * 
+	 * @param name  The name of the view
+	 * @param links The collections of the view and the attributes indexed
+	 * @return True if the view exists with the links; otherwise false is
+	 *         returned.
+	 */
+	protected boolean ensureView(String name, Map<String, Object> links) {
+		Map<String, Object> view = new HashMap<>();
+		view.put("name", name);
+		view.put("type", "arangosearch");
+		view.put("links", links);
+
+		try {
+			try {
+				call("create view " + name, false,
+						() -> arangoDB.db(dbName).route("/_api/view")
+								.withBody(view).post());
+			} catch (ArangoDBException e) {
+				if (e.getErrorNum() == null
+						|| e.getErrorNum() != DUPLICATE_NAME)
+					throw e;
+
+				// The view exists, so only its links are updated
+				call("update view " + name, true,
+						() -> arangoDB.db(dbName)
+								.route("/_api/view", name, "properties")
+								.withBody(Collections.singletonMap("links",
+										links))
+								.patch());
+			}
+			return true;
+		} catch (ArangoDBException e) {
+			showError(e, "Internal database error occured when creating the "
+					+ "view:\n" + name);
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the type of each step the database would take to run the query,
+	 * such as 'IndexNode' when an index is used or 'EnumerateCollectionNode'
+	 * when every document in a collection is read. The query is not run.
+	 * 
+	 * @param query    The query template
+	 * @param bindVars The values of the bind variables within the query
+	 * @return The type of each step within the query plan. If the query could
+	 *         not be explained, null is returned.
+	 */
+	protected List<String> explain(String query, Map<String, Object> bindVars) {
+		try {
+			AqlExecutionExplainEntity explained = call("explain", true,
+					() -> arangoDB.db(dbName).explainQuery(query, bindVars,
+							new AqlQueryExplainOptions()));
+
+			List<String> steps = new ArrayList<>();
+			for (ExecutionNode node : explained.getPlan().getNodes())
+				steps.add(node.getType());
+			return steps;
+		} catch (ArangoDBException e) {
+			System.err.println("Unable to explain query: " + e.getMessage());
+			return null;
+		}
+	}
+
 	/**
 	 * Creates a new database if the provided database does not exists.
 	 * 
 	 * @return True if a new database was created; otherwise false is returned.
 	 */
 	private boolean createDatabase() {
-		if (!arangoDB.getDatabases().contains(dbName)) {
+		boolean exists;
+		try {
+			exists = call("list databases", true,
+					() -> arangoDB.getDatabases().contains(dbName));
+		} catch (ArangoDBException e) {
+			showError(e, "Internal database error occured when checking for "
+					+ "a database named:\n" + dbName);
+			return false;
+		}
+
+		if (!exists) {
 			// The database does not exists so try to create one
 			try {
-				arangoDB.createDatabase(dbName);
-				arangoDB.shutdown();
+				call("create database " + dbName, false,
+						() -> arangoDB.createDatabase(dbName));
 				return true;
 			} catch (ArangoDBException e) {
-				new Popup(Alert.AlertType.ERROR, e.getException(),
+				showError(e,
 						"Internal database error occured when creating a database named:\n"
 								+ dbName);
 			}
@@ -172,6 +522,123 @@ public class Database {
 		return false;
 	}
 
+	/**
+	 * Sends the request to the database following the resilience policy. The
+	 * request is not sent while the circuit is open. When the server does not
+	 * respond, a request that is safe to repeat is retried with an increasing
+	 * delay until the retries run out or the deadline would be passed.
+	 * 
+	 * @param operation  Description of the operation, used in errors
+	 * @param idempotent True if sending the request more than once has the
+	 *                   same effect as sending it once
+	 * @param request    The request to send to the database
+	 * @return The result of the request
+	 * @throws ArangoDBException If the request failed on its last attempt or
+	 *                           the circuit is open
+	 */
+	private <T> T call(String operation, boolean idempotent,
+			Supplier<T> request) {
+		long deadline = System.currentTimeMillis()
+				+ policy.getOperationDeadline();
+		long backoff = policy.getInitialBackoff();
+
+		for (int attempt = 0;; ++attempt) {
+			if (!circuitBreaker.allowRequest())
+				throw new CircuitOpenException(operation);
+
+			try {
+				T result = request.get();
+				circuitBreaker.recordSuccess();
+				return result;
+			} catch (ArangoDBException e) {
+				// The request itself was rejected, so it would fail again.
+				// Only a response shows the server is reachable.
+				if (!isTransient(e)) {
+					if (e.getResponseCode() != null)
+						circuitBreaker.recordSuccess();
+					throw e;
+				}
+
+				circuitBreaker.recordFailure();
+				if (!idempotent || attempt >= policy.getMaxRetries())
+					throw e;
+
+				// Random delay up to the backoff so stations do not retry
+				// at the same moment
+				long delay = ThreadLocalRandom.current().nextLong(backoff + 1);
+				if (System.currentTimeMillis() + delay >= deadline)
+					throw e;
+
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+				backoff = Math.min(backoff * 2, policy.getMaxBackoff());
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the error was caused by the server not responding, in
+	 * which case the same request may succeed later. Errors without a
+	 * response are only transient when caused by the connection failing or
+	 * timing out, not by the request being unable to be sent, such as a
+	 * document that cannot be serialized.
+	 * 
+	 * @param e The error returned when sending the request
+	 * @return True if the server could not be reached, did not respond in
+	 *         time or was unavailable; otherwise false is returned.
+	 */
+	private boolean isTransient(ArangoDBException e) {
+		Integer code = e.getResponseCode();
+		if (code != null)
+			return code == 408 || code == 502 || code == 503 || code == 504;
+
+		// Connections refused, reset or timed out are IOExceptions
+		for (Throwable cause = e.getCause(); cause != null; cause = cause
+				.getCause())
+			if (cause instanceof IOException
+					|| cause instanceof TimeoutException)
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return The circuit breaker guarding the requests to the database
+	 */
+	protected CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Displays an error Popup describing a failed database operation. Database
+	 * operations may run on a background thread, so the Popup is always shown
+	 * on the JavaFX thread.
+	 * 
+	 * While the circuit is not closed the error is only logged, as the state
+	 * of the circuit is already shown and every station would otherwise be
+	 * covered in Popups.
+	 * 
+	 * @param e           The error returned from the database
+	 * @param contentText Description of the operation that failed
+	 */
+	private void showError(ArangoDBException e, String contentText) {
+		if (e instanceof CircuitOpenException
+				|| circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+			System.err.println(contentText + ": " + e.getMessage());
+			return;
+		}
+
+		String headerText = e.getException();
+		if (Platform.isFxApplicationThread())
+			new Popup(Alert.AlertType.ERROR, headerText, contentText);
+		else
+			Platform.runLater(() -> new Popup(Alert.AlertType.ERROR,
+					headerText, contentText));
+	}
+
 	/**
 	 * Closes the connection the the ArangoDB database.
 	 */
@@ -3,26 +3,150 @@
  * database model. This helps eliminate the need to change large amounts of
  * code when changing the model or the view.
  * 
+ * The controller is the ArangoDB implementation of the AngelRepository, with
+ * every repository method working on the angels collection.
+ * 
  * @author Nicholas Kunzler
  */
 
 package database;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 import com.arangodb.ArangoCursor;
 import com.arangodb.entity.BaseDocument;
 
 import angels.Angel;
 import angels.Attribute;
+import angels.Status;
+
+public class DatabaseController implements AngelRepository {
+
+	// Number of threads used to run database calls off the JavaFX thread
+	private static final int ASYNC_THREADS = 4;
+
+	// Number of angels sent to the database per request when bulk inserting
+	// and returned per request when streaming
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	// Maximum number of angels held by the read-through cache, only used for
+	// point lookups while the snapshot is not current
+	public static final int DEFAULT_CACHE_SIZE = 5000;
+
+	// Calls taking longer than this are written to the slow query log
+	public static final long DEFAULT_SLOW_QUERY_MILLIS = 250;
+	public static final String DEFAULT_SLOW_QUERY_LOG = "slow-queries.log";
+
+	// File holding the writes made while the database could not be reached
+	public static final String DEFAULT_JOURNAL = "pending-writes.journal";
 
-public class DatabaseController {
+	// Milliseconds between attempts to replay the pending writes
+	private static final long REPLAY_INTERVAL = 5 * 1000;
 
-	public Database db;
+	// Failed replays of a write, while the database is reachable, before the
+	// write is considered rejected and moved to the rejected file
+	private static final int MAX_REPLAY_ATTEMPTS = 5;
+
+	// Milliseconds between fetches of the angels changed by other stations
+	public static final long DEFAULT_SYNC_INTERVAL = 2 * 1000;
+
+	// Missed syncs after which the snapshot is no longer used for lookups
+	private static final int MAX_MISSED_SYNCS = 3;
+
+	// Searches whose facet counts are cached, and milliseconds they are used
+	private static final int FACET_CACHE_SIZE = 32;
+	private static final long FACET_MAX_AGE = 10 * 1000;
+
+	// Searches being scrolled whose source of pages is remembered
+	private static final int PAGED_SEARCHES = 32;
+
+	private final Database db;
 	private static DatabaseController controller = null;
 
+	private final ExecutorService executor;
+
+	// Angels from the angels collection, keyed by document key
+	private final AngelCache cache = new AngelCache(DEFAULT_CACHE_SIZE);
+
+	// Facet counts of recent searches, keyed by the signature of the criteria
+	private final FacetCache facets = new FacetCache(FACET_CACHE_SIZE,
+			FACET_MAX_AGE);
+
+	// True if the pages of a search are read from the snapshot, keyed by the
+	// signature of the criteria and the last ID of the latest page. Access
+	// ordered so the search scrolled least recently is removed first.
+	private final Map<String, Boolean> pageSources = Collections
+			.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f,
+					true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<String, Boolean> e) {
+					return size() > PAGED_SEARCHES;
+				}
+			});
+
+	// Latency of every call, grouped by query template
+	private final QueryMetrics metrics;
+
+	// Writes waiting to be replayed, and the angels used while offline
+	private final WriteJournal journal;
+	private final AngelSnapshot snapshot = new AngelSnapshot();
+	private final ScheduledExecutorService scheduler;
+	private int failedReplays = 0;
+
+	// Orders the journaled writes, and the revision checks made against
+	// them, with the snapshot. Never held while a request is sent, so a slow
+	// request or replay never blocks reading the journal.
+	private final Object writeLock = new Object();
+
+	// Revisions given to angels changed within the snapshot by journaled
+	// writes, replaced by the database revision once the angel is read again.
+	// Started with the time the station started, so a revision journaled
+	// before a restart is never given again.
+	private static final String LOCAL_REVISION = "local-";
+	private final String localRevisionPrefix = LOCAL_REVISION
+			+ Long.toString(System.currentTimeMillis(), 36) + "-";
+	private final AtomicLong localRevision = new AtomicLong();
+
+	// Local revision given by each journaled write, and the database revision
+	// each key and local revision became once replayed, so a revision checked
+	// write journaled after it can be checked against the database
+	private final Map<WriteJournal.Entry, String> localRevisions =
+			new ConcurrentHashMap<>();
+	private final Map<String, String> replayedRevisions =
+			new ConcurrentHashMap<>();
+
+	// Keeps the snapshot current with the writes of other stations
+	private final DeltaSync deltaSync = new DeltaSync(this::fetchChanges,
+			DeltaSync.DEFAULT_OVERLAP);
+	private volatile long syncInterval = 0;
+
+	// True once the search view exists, so keyword searches can use it
+	private volatile boolean searchView = false;
+
 	/**
 	 * Creates a new database controller based off of a database. This allows
 	 * for data entry and access.
@@ -30,8 +154,60 @@ public class DatabaseController {
 	 * @param db The database the controller will communicate with.
 	 */
 	public DatabaseController(Database db) {
+		this(db, new QueryMetrics(DEFAULT_SLOW_QUERY_MILLIS,
+				Paths.get(DEFAULT_SLOW_QUERY_LOG)));
+	}
+
+	/**
+	 * Creates a new database controller based off of a database, recording
+	 * the latency of every call within the metrics.
+	 * 
+	 * @param db      The database the controller will communicate with.
+	 * @param metrics Records the latency of each call to the database
+	 */
+	public DatabaseController(Database db, QueryMetrics metrics) {
+		this(db, metrics, new WriteJournal(Paths.get(DEFAULT_JOURNAL)));
+	}
+
+	/**
+	 * Creates a new database controller based off of a database. Writes made
+	 * while the database cannot be reached are stored in the journal and
+	 * replayed, in order, once the database can be reached again.
+	 * 
+	 * @param db      The database the controller will communicate with.
+	 * @param metrics Records the latency of each call to the database
+	 * @param journal Stores the writes waiting to be replayed
+	 */
+	public DatabaseController(Database db, QueryMetrics metrics,
+			WriteJournal journal) {
 		this.db = db;
+		this.metrics = metrics;
+		this.journal = journal;
 		controller = this;
+		AngelRepository.setInstance(this);
+
+		// Daemon threads so pending calls never keep the application open
+		executor = Executors.newFixedThreadPool(ASYNC_THREADS, runnable -> {
+			Thread thread = new Thread(runnable, "database-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		// Replaying any pending writes now, then periodically and as soon as
+		// the database can be reached again. Syncs share the thread so the
+		// snapshot is never read while writes are being replayed, and only
+		// one replay runs at a time.
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "database-background");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::replayJournal, 0,
+				REPLAY_INTERVAL, TimeUnit.MILLISECONDS);
+		db.getCircuitBreaker().addListener(state -> {
+			if (state == CircuitBreaker.State.CLOSED && !journal.isEmpty())
+				scheduler.execute(this::replayJournal);
+		});
 	}
 	
 	public static DatabaseController getInstance() {
@@ -51,17 +227,220 @@ public class DatabaseController {
 		return db.createCollection(collection.toString());
 	}
 
+	/**
+	 * Creates each of the indexes declared for the collection, if they do not
+	 * already exist, and then logs which of the registered query templates
+	 * are able to use an index.
+	 * 
+	 * @param collection The collection to create the indexes for
+	 * @return True if every index exists on the collection; otherwise false
+	 *         is returned.
+	 */
+	public boolean ensureIndexes(DBCollection collection) {
+		boolean allCreated = true;
+		for (IndexSpec index : collection.getIndexes())
+			allCreated &= db.ensureIndex(collection.toString(), index);
+
+		// The registered templates are run on the angels
+		if (collection == DBCollection.ANGELS)
+			logIndexUsage(collection);
+		return allCreated;
+	}
+
+	/**
+	 * Creates the analyzer and the ArangoSearch view used by keyword searches
+	 * of the collection, if they do not already exist. Once created, keyword
+	 * searches are run against the view rather than reading every angel. See
+	 * SearchView.
+	 * 
+	 * @param collection The collection searched by the view
+	 * @return True if the view exists; otherwise false is returned.
+	 */
+	public boolean ensureSearchView(DBCollection collection) {
+		searchView = db.ensureAnalyzer(SearchView.analyzerDefinition())
+				&& db.ensureView(SearchView.NAME,
+						SearchView.links(collection));
+		return searchView;
+	}
+
+	/**
+	 * Explains each of the registered query templates against the collection
+	 * and logs whether the query uses an index or reads the entire collection
+	 * to the slow query log.
+	 * 
+	 * @param collection The collection the queries are run on
+	 */
+	private void logIndexUsage(DBCollection collection) {
+		StringBuilder usages = new StringBuilder("Index usage on "
+				+ collection);
+		for (QueryTemplate template : QueryTemplate.values()) {
+			List<String> steps = db.explain(template.toString(),
+					template.exampleBindVars(collection));
+			if (steps == null)
+				continue;
+
+			String usage = "uses the primary key";
+			if (steps.contains("IndexNode"))
+				usage = "uses an index";
+			else if (steps.contains("EnumerateCollectionNode"))
+				usage = "reads every document, no index";
+			usages.append(System.lineSeparator()).append(template.name())
+					.append(' ').append(usage);
+		}
+		metrics.log(usages.toString());
+	}
+
 	/**
 	 * Inserts a new angel within the desired collection within the database.
 	 * 
 	 * @param angel      The angel that will be added to the desired collection
 	 * @param collection The collection in which to add the angel
-	 * @return Boolean that returns true if the angel was successfully added to the
-	 *         collection; otherwise false is returned.
+	 * @return INSERTED if the angel was added to the collection, DUPLICATE if
+	 *         an angel with the same ID already exists, otherwise ERROR.
+	 */
+	public InsertOutcome insertAngel(Angel angel, DBCollection collection) {
+		Map<String, InsertOutcome> outcomes = new LinkedHashMap<>();
+		insertBatch(Collections.singletonList(angel), collection, outcomes);
+		return outcomes.get(angel.get(Attribute.ID));
+	}
+
+	/**
+	 * Inserts all the angels within the desired collection using the default
+	 * batch size. See insertAngels(Collection, DBCollection, int).
+	 * 
+	 * @param angels     The angels that will be added to the collection
+	 * @param collection The collection in which to add the angels
+	 * @return Map of each angel ID to the outcome of inserting the angel
+	 */
+	public Map<String, InsertOutcome> insertAngels(Collection<Angel> angels,
+			DBCollection collection) {
+		return insertAngels(angels, collection, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Inserts all the angels within the desired collection. Rather than one
+	 * request per angel, the angels are sent to the database in batches.
+	 * 
+	 * @param angels     The angels that will be added to the collection
+	 * @param collection The collection in which to add the angels
+	 * @param batchSize  The maximum number of angels sent per request
+	 * @return Map of each angel ID to the outcome of inserting the angel, in
+	 *         the same order as the angels were provided.
+	 */
+	public Map<String, InsertOutcome> insertAngels(Collection<Angel> angels,
+			DBCollection collection, int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException(
+					"Batch size must be positive: " + batchSize);
+
+		Map<String, InsertOutcome> outcomes = new LinkedHashMap<>();
+		List<Angel> batch = new ArrayList<>(
+				Math.min(batchSize, angels.size()));
+
+		for (Angel angel : angels) {
+			batch.add(angel);
+			if (batch.size() == batchSize) {
+				insertBatch(batch, collection, outcomes);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty())
+			insertBatch(batch, collection, outcomes);
+
+		return outcomes;
+	}
+
+	/**
+	 * Inserts a single batch of angels and records the outcome of each angel.
+	 * 
+	 * @param batch      The angels to insert in a single request
+	 * @param collection The collection in which to add the angels
+	 * @param outcomes   Map where the outcome of each angel is recorded
+	 */
+	private void insertBatch(List<Angel> batch, DBCollection collection,
+			Map<String, InsertOutcome> outcomes) {
+		List<String> keys = new ArrayList<>(batch.size());
+		List<BaseDocument> documents = new ArrayList<>(batch.size());
+		for (Angel angel : batch) {
+			String key = (String) angel.get(Attribute.ID);
+			keys.add(key);
+			documents.add(angel.toDocument());
+			if (collection == DBCollection.ANGELS)
+				cache.invalidate(key);
+		}
+
+		// Inserted by a query so the database stamps the angels. Sent only
+		// once, as a repeated insert would find the angels it just added.
+		QueryTemplate template = QueryTemplate.INSERT_ANGELS;
+		List<Angel> inserted = timed(template.name(),
+				"insert " + documents.size() + " documents", () -> {
+					ArangoCursor<Angel> added = db.queryOnce(
+							template.toString(), QueryTemplate.bindVars(
+									"documents", documents,
+									"@collection", collection),
+							Angel.class);
+
+					// Query result was unsuccessful
+					if (added == null)
+						return null;
+
+					List<Angel> angels = new ArrayList<>();
+					added.forEachRemaining(angels::add);
+					return angels;
+				}, List::size);
+
+		Set<String> added = new HashSet<>();
+		if (inserted != null) {
+			for (Angel angel : inserted) {
+				added.add(angel.getKey());
+				if (collection == DBCollection.ANGELS)
+					snapshot.put(angel);
+			}
+		}
+
+		// Angels that were not added are duplicates if their key exists
+		Set<String> existing = Collections.emptySet();
+		if (inserted != null && added.size() < keys.size()) {
+			List<String> missing = new ArrayList<>(keys);
+			missing.removeAll(added);
+			existing = existingKeys(missing, collection);
+		}
+
+		for (String key : keys) {
+			if (added.contains(key))
+				outcomes.put(key, InsertOutcome.INSERTED);
+			else if (existing.contains(key))
+				outcomes.put(key, InsertOutcome.DUPLICATE);
+			else
+				outcomes.put(key, InsertOutcome.ERROR);
+
+			// Again, as a read racing the insert may have cached an angel
+			if (collection == DBCollection.ANGELS)
+				cache.invalidate(key);
+		}
+	}
+
+	/**
+	 * @param keys       The keys to look for
+	 * @param collection The collection to look within
+	 * @return The keys of the documents that exist. Empty if they could not
+	 *         be read.
 	 */
-	public boolean insertAngel(Angel angel, DBCollection collection) {
-		return db.insert((String) angel.get(Attribute.ID),
-				angel.getAttributes(), collection.toString());
+	private Set<String> existingKeys(List<String> keys,
+			DBCollection collection) {
+		QueryTemplate template = QueryTemplate.EXISTING_KEYS;
+		Set<String> existing = new HashSet<>();
+		timed(template.name(), template.toString(), () -> {
+			ArangoCursor<String> found = db.query(template.toString(),
+					QueryTemplate.bindVars(
+							"keys", keys,
+							"@collection", collection),
+					String.class);
+			if (found != null)
+				found.forEachRemaining(existing::add);
+			return existing;
+		}, Set::size);
+		return existing;
 	}
 
 	/**
@@ -73,38 +452,172 @@ public class DatabaseController {
 	 *         Null is returned if the query is inconclusive.
 	 */
 	public List<Angel> query(String query) {
-		// Executor will call this method when passing it the task
-		List<Angel> results = new ArrayList<>();
+		return query(query, null);
+	}
 
-		ArangoCursor<BaseDocument> documents = db.query(query);
+	/**
+	 * Queries the database with one of the registered query templates.
+	 * 
+	 * @param template The registered query template
+	 * @param bindVars The values for the bind variables within the template
+	 * @return A list containing the results of the query.
+	 *         Null is returned if the query is inconclusive.
+	 */
+	public List<Angel> query(QueryTemplate template,
+			Map<String, Object> bindVars) {
+		return query(template.toString(), bindVars);
+	}
 
-		// Query result was unsuccessful
-		if (documents == null)
-			return null;
+	/**
+	 * Queries the database using a query template and the values for the bind
+	 * variables within the template.
+	 * 
+	 * @param template The aql query containing bind variables
+	 * @param bindVars The values for the bind variables within the template
+	 * @return A list containing the results of the query.
+	 *         Null is returned if the query is inconclusive.
+	 */
+	public List<Angel> query(String template, Map<String, Object> bindVars) {
+		return query(QueryTemplate.nameOf(template), template, bindVars);
+	}
 
-		for (BaseDocument doc : documents)
-			results.add(new Angel(doc));
+	/**
+	 * Queries the database and records the latency of the query, including
+	 * reading every result, under the given name. While the database cannot
+	 * be reached, the query is answered from the snapshot if possible.
+	 * 
+	 * @param name     The name the latency is recorded under
+	 * @param aql      The aql query containing bind variables
+	 * @param bindVars The values for the bind variables within the query
+	 * @return A list containing the results of the query.
+	 *         Null is returned if the query is inconclusive.
+	 */
+	private List<Angel> query(String name, String aql,
+			Map<String, Object> bindVars) {
+		List<Angel> results = timed(name, aql, () -> {
+			ArangoCursor<Angel> documents = db.query(aql, bindVars,
+					Angel.class);
+
+			// Query result was unsuccessful
+			if (documents == null)
+				return null;
 
+			List<Angel> angels = new ArrayList<>();
+			for (Angel angel : documents) {
+				snapshotIfAngel(angel);
+				angels.add(angel);
+			}
+			return angels;
+		}, List::size);
+
+		// Answering from the snapshot while the database cannot be reached
+		if (results == null && !isOnline())
+			return snapshot.query(name, bindVars);
 		return results;
 	}
 
 	/**
-	 * Queries the database collection based on the query string and then sorts
-	 * the results in ascending order by angel ID.
+	 * Adds the ID number and suffix to any angels within the collection that
+	 * were added before they were stored with the angel. These are needed to
+	 * sort angels by ID within the database.
 	 * 
-	 * @param query      The aql query command for the collection
-	 * @param collection The collection used when querying the collection
-	 * @return List containing the results of the query.
-	 *         Null is returned if the query is inconclusive.
+	 * @param collection The collection containing the angels
 	 */
-	public List<Angel> querySorted(String query) {
-		List<Angel> results = this.query(query);
-		
-		if (results == null)
-			return null;
-		
-		Collections.sort(results);
-		return results;
+	public void addMissingIDParts(DBCollection collection) {
+		QueryTemplate template = QueryTemplate.ADD_MISSING_ID_PARTS;
+		timed(template.name(), template.toString(),
+				() -> db.query(template.toString(),
+						QueryTemplate.bindVars("@collection", collection)),
+				documents -> 0);
+	}
+
+	/**
+	 * Lower cases the gender of any angels within the collection that were
+	 * added before genders were stored in lower case, ex: BOY.
+	 * 
+	 * @param collection The collection containing the angels
+	 */
+	public void lowerCaseGenders(DBCollection collection) {
+		QueryTemplate template = QueryTemplate.LOWER_CASE_GENDERS;
+		timed(template.name(), template.toString(),
+				() -> db.query(template.toString(),
+						QueryTemplate.bindVars("@collection", collection)),
+				documents -> 0);
+	}
+
+	/**
+	 * Stamps any angels within the collection that were added before every
+	 * write set the update stamp, so they are seen by fetchChangedSince().
+	 * 
+	 * @param collection The collection containing the angels
+	 */
+	public void addMissingUpdateStamps(DBCollection collection) {
+		QueryTemplate template = QueryTemplate.ADD_MISSING_UPDATE_STAMPS;
+		timed(template.name(), template.toString(),
+				() -> db.query(template.toString(),
+						QueryTemplate.bindVars("@collection", collection)),
+				documents -> 0);
+	}
+
+	/**
+	 * Streams the results of the query to the consumer using the default
+	 * batch size. See stream(String, Map, int, Consumer).
+	 * 
+	 * @param template The registered query template
+	 * @param bindVars The values for the bind variables within the template
+	 * @param consumer Receives each of the angels returned by the query
+	 * @return True if every result was streamed; otherwise false is returned.
+	 */
+	public boolean stream(QueryTemplate template, Map<String, Object> bindVars,
+			Consumer<Angel> consumer) {
+		return stream(template.toString(), bindVars, DEFAULT_BATCH_SIZE,
+				consumer);
+	}
+
+	/**
+	 * Streams the results of the query to the consumer, one angel at a time.
+	 * Unlike query(), the results are never collected into a list. Only a
+	 * single batch of results is held in memory at once, no matter how many
+	 * angels the query returns.
+	 * 
+	 * @param template  The aql query containing bind variables
+	 * @param bindVars  The values for the bind variables within the template
+	 * @param batchSize The number of angels fetched from the database at once
+	 * @param consumer  Receives each of the angels returned by the query
+	 * @return True if every result was streamed; otherwise false is returned.
+	 */
+	public boolean stream(String template, Map<String, Object> bindVars,
+			int batchSize, Consumer<Angel> consumer) {
+		long start = System.nanoTime();
+		ArangoCursor<Angel> documents = db.stream(template, bindVars,
+				batchSize, Angel.class);
+
+		// Query result was unsuccessful
+		if (documents == null) {
+			metrics.record(QueryTemplate.nameOf(template), template,
+					System.nanoTime() - start, 0);
+			return false;
+		}
+
+		int streamed = 0;
+		try {
+			while (documents.hasNext()) {
+				Angel angel = documents.next();
+				snapshotIfAngel(angel);
+				consumer.accept(angel);
+				streamed++;
+			}
+		} finally {
+			metrics.record(QueryTemplate.nameOf(template), template,
+					System.nanoTime() - start, streamed);
+
+			try {
+				documents.close();
+			} catch (IOException e) {
+				System.err.println("Unable to close cursor: " + e.getMessage());
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -117,12 +630,204 @@ public class DatabaseController {
 	 *         otherwise false is returned.
 	 */
 	public boolean contains(String key, DBCollection collection) {
-		return db.contains(key, collection.toString());
+		return timed("CONTAINS", "contains " + key, () -> {
+			if (collection == DBCollection.ANGELS) {
+				if (isSnapshotCurrent())
+					return snapshot.get(key) != null;
+				if (cache.contains(key, cacheMaxAge()))
+					return true;
+				if (!isOnline())
+					return snapshot.get(key) != null;
+			}
+			return db.contains(key, collection.toString());
+		}, exists -> exists ? 1 : 0);
+	}
+
+	/**
+	 * Returns the angel with the given key. Angels within the angels
+	 * collection are served from the snapshot while it is current, otherwise
+	 * from the cache when possible. Angels read from the database are added
+	 * to the cache. Neither serves an angel older than the snapshot is
+	 * allowed to be.
+	 * 
+	 * @param key        The key of the angel, the same as the angel ID
+	 * @param collection The collection containing the angel
+	 * @return The angel with the key. Null is returned if the angel does not
+	 *         exist or could not be read.
+	 */
+	public Angel getAngel(String key, DBCollection collection) {
+		if (collection == DBCollection.ANGELS) {
+			Angel current = isSnapshotCurrent() ? snapshot.get(key)
+					: cache.get(key, cacheMaxAge());
+			if (current != null)
+				return current;
+		}
+
+		Angel angel = timed("GET", "get " + key,
+				() -> db.get(key, collection.toString(), Angel.class),
+				found -> 1);
+		if (angel == null) {
+			if (collection == DBCollection.ANGELS && !isOnline())
+				return snapshot.get(key);
+			return null;
+		}
+
+		if (collection == DBCollection.ANGELS) {
+			cache.put(angel);
+			snapshot.put(angel);
+		}
+		return angel;
+	}
+
+	/**
+	 * Adds the angel to the snapshot if it was read from the angels
+	 * collection. Only point lookups are added to the cache, so it does not
+	 * become a second copy of the snapshot. Documents returned by queries on
+	 * other collections are not kept.
+	 * 
+	 * @param angel The angel returned by the database
+	 */
+	private void snapshotIfAngel(Angel angel) {
+		if (DBCollection.ANGELS.toString().equals(angel.getCollection()))
+			snapshot.put(angel);
+	}
+
+	/**
+	 * @return Milliseconds an angel is served from the cache, the same age
+	 *         the snapshot is used for. See isSnapshotCurrent().
+	 */
+	private long cacheMaxAge() {
+		return (syncInterval > 0 ? syncInterval : DEFAULT_SYNC_INTERVAL)
+				* MAX_MISSED_SYNCS;
+	}
+
+	/**
+	 * Reads every angel within the angels collection into the snapshot, and
+	 * then keeps the snapshot current by fetching only the angels changed
+	 * since the previous fetch. While current, the snapshot answers the
+	 * lookups of the displays, such as searches, without a query. Lookups
+	 * can also still be answered if the database later cannot be reached.
+	 * 
+	 * @param interval Milliseconds between fetches of the changed angels
+	 */
+	public void startDeltaSync(long interval) {
+		if (interval <= 0)
+			throw new IllegalArgumentException(
+					"Sync interval must be positive: " + interval);
+
+		syncInterval = interval;
+		scheduler.scheduleWithFixedDelay(this::syncSnapshot, 0, interval,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Fetches the angels changed since the last sync into the snapshot.
+	 * Skipped while writes are waiting to be replayed, as the database does
+	 * not yet have the changes applied to the snapshot.
+	 */
+	private void syncSnapshot() {
+		try {
+			if (!journal.isEmpty() || !isOnline())
+				return;
+			deltaSync.sync();
+		} catch (RuntimeException e) {
+			// Thrown errors would cancel every later sync
+			System.err.println("Unable to sync angels: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Streams the angels written at or after the stamp into the snapshot, and
+	 * removes the angels deleted at or after the stamp. See
+	 * DeltaSync.Source.
+	 * 
+	 * @param since    The update stamp, 0 to fetch every angel
+	 * @param consumer Receives each of the changed angels
+	 * @return True if every changed and deleted angel was fetched
+	 */
+	private boolean fetchChanges(long since, Consumer<Angel> consumer) {
+		// Every angel is read rather than filtered by stamp, which would skip
+		// angels that have not been stamped
+		if (since <= 0)
+			return stream(QueryTemplate.ALL_ANGELS_BY_ID,
+					QueryTemplate.bindVars("@collection", DBCollection.ANGELS),
+					consumer);
+
+		return stream(QueryTemplate.ANGELS_CHANGED_SINCE,
+				QueryTemplate.bindVars(
+						"since", since,
+						"@collection", DBCollection.ANGELS),
+				consumer) && removeDeleted(since);
+	}
+
+	/**
+	 * Removes the angels deleted at or after the stamp from the cache and
+	 * snapshot. An angel added again after it was deleted is kept.
+	 * 
+	 * @param since The update stamp
+	 * @return True if the deleted angels were read
+	 */
+	private boolean removeDeleted(long since) {
+		QueryTemplate template = QueryTemplate.ANGELS_DELETED_SINCE;
+		List<BaseDocument> deleted = timed(template.name(),
+				template.toString(), () -> {
+					ArangoCursor<BaseDocument> documents = db.query(
+							template.toString(), QueryTemplate.bindVars(
+									"since", since,
+									"@collection",
+									DBCollection.DELETED_ANGELS));
+
+					// Query result was unsuccessful
+					if (documents == null)
+						return null;
+
+					List<BaseDocument> removed = new ArrayList<>();
+					documents.forEachRemaining(removed::add);
+					return removed;
+				}, List::size);
+
+		if (deleted == null)
+			return false;
+		for (BaseDocument document : deleted) {
+			Object stamp = document.getAttribute(Angel.UPDATE_STAMP);
+			if (!(stamp instanceof Number))
+				continue;
+			cache.invalidate(document.getKey());
+			snapshot.remove(document.getKey(), ((Number) stamp).longValue());
+		}
+		return true;
+	}
+
+	/**
+	 * @return True if the snapshot has been synced recently enough to answer
+	 *         lookups in place of the database.
+	 */
+	private boolean isSnapshotCurrent() {
+		return syncInterval > 0
+				&& deltaSync.isCurrent(syncInterval * MAX_MISSED_SYNCS);
+	}
+
+	/**
+	 * @return The delta sync keeping the snapshot current
+	 */
+	public DeltaSync getDeltaSync() {
+		return deltaSync;
+	}
+
+	/**
+	 * Returns the read-through cache of angels. Exposes the hit and miss
+	 * counts of the cache.
+	 * 
+	 * @return The angel cache
+	 */
+	public AngelCache getCache() {
+		return cache;
 	}
 
 	/**
 	 * Updates the desired keys attribute with the new value within the provided
-	 * collection.
+	 * collection. See write() for how the update is handled while the
+	 * database cannot be reached.
 	 * 
 	 * @param key        String representing the key of the document being
 	 *                   updated
@@ -132,14 +837,490 @@ public class DatabaseController {
 	 */
 	public void update(String key, Object attribute, Object values,
 			DBCollection collection) {
-		String updateQuery = "UPDATE {_key: '" + key + "'} "
-				+ "WITH {" + attribute.toString() + ": '" + values + "'} "
-				+ "IN " + collection.toString();
-		db.query(updateQuery);
+		Map<String, Object> changes = new HashMap<>();
+		changes.put(attribute.toString(),
+				values instanceof Enum ? values.toString() : values);
+		write(new WriteJournal.Entry(collection.toString(),
+				Collections.singletonList(key), changes));
+	}
+
+	/**
+	 * Updates all the attributes of the document with the new values using a
+	 * single request. Either all of the changes are applied or none are. See
+	 * write() for how the update is handled while the database cannot be
+	 * reached.
+	 * 
+	 * @param key        String representing the key of the document being
+	 *                   updated
+	 * @param changes    Map of each attribute to update to its new value
+	 * @param collection The collection in which to search for the key
+	 * @return The angel with all of the changes applied. Null is returned if
+	 *         the update was unsuccessful.
+	 */
+	public Angel updateAttributes(String key, Map<Attribute, Object> changes,
+			DBCollection collection) {
+		Map<String, Angel> updated = write(new WriteJournal.Entry(
+				collection.toString(), Collections.singletonList(key),
+				toDocumentValues(changes)));
+
+		if (updated == null)
+			return null;
+		return updated.get(key);
+	}
+
+	/**
+	 * Updates all the attributes of every document with the given keys using
+	 * a single request, rather than one request per document. Keys that do
+	 * not exist within the collection are skipped. See write() for how the
+	 * update is handled while the database cannot be reached.
+	 * 
+	 * @param keys       The keys of the documents being updated
+	 * @param changes    Map of each attribute to update to its new value
+	 * @param collection The collection in which to search for the keys
+	 * @return Map of each key, in the order provided, to the angel with all of
+	 *         the changes applied. A key maps to null if its document was not
+	 *         updated. Null is returned if the request was unsuccessful.
+	 */
+	public Map<String, Angel> updateAll(Collection<String> keys,
+			Map<Attribute, Object> changes, DBCollection collection) {
+		return write(new WriteJournal.Entry(collection.toString(),
+				new ArrayList<>(keys), toDocumentValues(changes)));
+	}
+
+	/**
+	 * Applies all the changes to the angel only if it still has the revision
+	 * it had when read. See AngelRepository.updateIfUnchanged().
+	 * 
+	 * While the database cannot be reached, or earlier writes are waiting to
+	 * be replayed, the revision is compared against the snapshot instead and
+	 * the write is journaled as with write(). The journaled write keeps the
+	 * revision and is replayed only if the angel still has it, so a change
+	 * another station made meanwhile is never overwritten. A write that
+	 * conflicts once replayed is moved to the rejected file of the journal.
+	 * 
+	 * @param angel      The angel as it was read, including its revision
+	 * @param changes    Map of each attribute to update to its new value
+	 * @param collection The collection containing the angel
+	 * @return UPDATED with the updated angel, CONFLICT with the current angel
+	 *         if it was changed since it was read, NOT_FOUND, or ERROR.
+	 */
+	public UpdateResult updateIfUnchanged(Angel angel,
+			Map<Attribute, Object> changes, DBCollection collection) {
+		String key = angel.getKey();
+		WriteJournal.Entry entry = new WriteJournal.Entry(
+				collection.toString(), Collections.singletonList(key),
+				toDocumentValues(changes), angel.getRevision());
+		invalidate(entry);
+
+		// Sent without the write lock, and only once every journaled write
+		// has been replayed, as with write()
+		if (journal.isEmpty() && isOnline()) {
+			UpdateResult result = applyOnlineIfRevision(entry,
+					angel.getRevision());
+
+			// Updated and conflicting angels are kept by the snapshot, so the
+			// angel cached by a read racing the write is removed
+			invalidate(entry);
+			if (result.getOutcome() != UpdateResult.Outcome.ERROR
+					|| isOnline())
+				return result;
+		}
+
+		// Compared and applied while locked, so two journaled writes of the
+		// same revision cannot both succeed
+		long position;
+		Angel updated;
+		synchronized (writeLock) {
+			Angel current = collection == DBCollection.ANGELS
+					? snapshot.get(key) : null;
+			if (current == null)
+				return UpdateResult.error();
+			if (!Objects.equals(current.getRevision(), angel.getRevision()))
+				return UpdateResult.conflict(current);
+
+			position = journal.append(entry);
+			updated = position < 0 ? null : applyLocally(entry).get(key);
+		}
+
+		invalidate(entry);
+		if (!journal.sync(position))
+			return UpdateResult.error();
+		return UpdateResult.updated(updated);
+	}
+
+	/**
+	 * Sends the write of a single document to the database, applied only if
+	 * the document still has the revision.
+	 * 
+	 * The write is sent only once. Had a write that timed out been applied,
+	 * sending it again would find the revision it set and report the user's
+	 * own change as a conflict.
+	 * 
+	 * @param entry    The key to update and the changes to apply
+	 * @param revision The revision the document must have
+	 * @return The outcome of the update, along with the updated or current
+	 *         angel.
+	 */
+	private UpdateResult applyOnlineIfRevision(WriteJournal.Entry entry,
+			String revision) {
+		String key = entry.getKeys().get(0);
+		QueryTemplate template = QueryTemplate.UPDATE_IF_REVISION;
+		BaseDocument result;
+		try {
+			result = timed(template.name(), template.toString(), () -> {
+				ArangoCursor<BaseDocument> documents = db.queryIfUnchanged(
+						template.toString(), QueryTemplate.bindVars(
+								"key", key,
+								"rev", revision,
+								"changes", entry.getChanges(),
+								"@collection", entry.getCollection()),
+						BaseDocument.class);
+				if (documents == null || !documents.hasNext())
+					return null;
+				return documents.next();
+			}, found -> 1);
+		} catch (WriteConflictException e) {
+			// Another write changed the angel between the query reading and
+			// updating it, so the angel it wrote is read
+			Angel current = timed("GET", "get " + key,
+					() -> db.get(key, entry.getCollection(), Angel.class),
+					found -> 1);
+			if (current == null)
+				return UpdateResult.error();
+			snapshotIfAngel(current);
+			return UpdateResult.conflict(current);
+		}
+
+		if (result == null)
+			return UpdateResult.error();
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> document = (Map<String, Object>) result
+				.getAttribute("document");
+		if (document == null)
+			return UpdateResult.notFound();
+
+		Angel angel = toAngel(document);
+		snapshotIfAngel(angel);
+		if (Boolean.TRUE.equals(result.getAttribute("updated")))
+			return UpdateResult.updated(angel);
+		return UpdateResult.conflict(angel);
+	}
+
+	/**
+	 * Creates an angel from a document nested within a query result, which
+	 * is read as a map rather than a BaseDocument.
+	 * 
+	 * @param document The attributes of the document, including _key, _id and
+	 *                 _rev
+	 * @return The angel of the document
+	 */
+	private Angel toAngel(Map<String, Object> document) {
+		Angel angel = new Angel();
+		document.forEach(angel::set);
+		return angel;
+	}
+
+	/**
+	 * Applies the write to the database. While the database cannot be
+	 * reached, or earlier writes are still waiting to be replayed, the write
+	 * is instead added to the journal and applied to the snapshot, allowing
+	 * angels to keep being processed. Journaled writes are replayed in order
+	 * once the database can be reached again.
+	 * 
+	 * @param entry The keys to update and the changes to apply to each
+	 * @return Map of each key, in the order provided, to the angel with all of
+	 *         the changes applied. A key maps to null if its document was not
+	 *         updated. Null is returned if the write was unsuccessful.
+	 */
+	private Map<String, Angel> write(WriteJournal.Entry entry) {
+		// Invalidated first so a failed update never leaves a stale angel, and
+		// again afterwards to remove any angel cached by a read racing the
+		// write. The updated angels are kept by the snapshot.
+		invalidate(entry);
+
+		// Sent only once every journaled write has been replayed, so a write
+		// never overtakes an earlier one
+		if (journal.isEmpty() && isOnline()) {
+			Map<String, Angel> results = applyOnline(entry);
+			invalidate(entry);
+
+			// Journaled only if the database stopped responding
+			if (results != null || isOnline())
+				return results;
+		}
+
+		// Applied while locked so the snapshot sees the journaled writes in
+		// the order they are replayed
+		long position;
+		Map<String, Angel> results;
+		synchronized (writeLock) {
+			position = journal.append(entry);
+			results = position < 0 ? null : applyLocally(entry);
+		}
+		invalidate(entry);
+
+		// Waiting outside the lock so concurrent writes share a disk flush
+		if (!journal.sync(position))
+			return null;
+		return results;
+	}
+
+	/**
+	 * Removes the angels the write changes from the cache. Called both before
+	 * and after a write, as a read made while the write is sent may cache the
+	 * angel as it was before the write.
+	 * 
+	 * @param entry The keys to update and the collection containing them
+	 */
+	private void invalidate(WriteJournal.Entry entry) {
+		if (DBCollection.ANGELS.toString().equals(entry.getCollection()))
+			for (String key : entry.getKeys())
+				cache.invalidate(key);
+	}
+
+	/**
+	 * Sends the write to the database using a single request.
+	 * 
+	 * @param entry The keys to update and the changes to apply to each
+	 * @return Map of each key to its updated angel, or to null if the key does
+	 *         not exist. Null is returned if the request was unsuccessful.
+	 */
+	private Map<String, Angel> applyOnline(WriteJournal.Entry entry) {
+		List<Angel> updated = query(QueryTemplate.UPDATE_ATTRIBUTES_BULK,
+				QueryTemplate.bindVars(
+						"keys", entry.getKeys(),
+						"changes", entry.getChanges(),
+						"@collection", entry.getCollection()));
+
+		if (updated == null)
+			return null;
+
+		Map<String, Angel> results = new LinkedHashMap<>();
+		for (String key : entry.getKeys())
+			results.put(key, null);
+		for (Angel angel : updated)
+			results.put(angel.getKey(), angel);
+		return results;
+	}
+
+	/**
+	 * Applies the journaled write to the angels within the snapshot, so the
+	 * changes are seen before the write is replayed.
+	 * 
+	 * @param entry The keys to update and the changes to apply to each
+	 * @return Map of each key to its updated angel, or to null if the angel
+	 *         is not within the snapshot.
+	 */
+	private Map<String, Angel> applyLocally(WriteJournal.Entry entry) {
+		boolean angels = DBCollection.ANGELS.toString()
+				.equals(entry.getCollection());
+
+		// Recorded so the database revision it becomes can be found once the
+		// write is replayed
+		String revision = localRevisionPrefix + localRevision.incrementAndGet();
+		localRevisions.put(entry, revision);
+
+		Map<String, Angel> results = new LinkedHashMap<>();
+		for (String key : entry.getKeys()) {
+			Angel current = angels ? snapshot.get(key) : null;
+			if (current == null) {
+				results.put(key, null);
+				continue;
+			}
+
+			Angel updated = new Angel(current);
+			updated.setRevision(revision);
+			entry.getChanges().forEach(updated::set);
+
+			// Newer than the stored angel, so a sync reading the database
+			// before the write is replayed never undoes the change. Not the
+			// time of the station, which may be ahead of the database and
+			// would hide the replayed write.
+			updated.setUpdateStamp(current.getUpdateStamp() + 1);
+			snapshot.put(updated);
+			results.put(key, updated);
+		}
+		return results;
+	}
+
+	/**
+	 * Sends the journaled writes to the database in the order they were
+	 * made. Stops at the first write that could not be sent, leaving it and
+	 * every later write in the journal to be replayed later. A write the
+	 * reachable database keeps rejecting is moved to the rejected file of the
+	 * journal, and counted within the title, rather than discarded.
+	 * 
+	 * No lock is held while the writes are sent. Writes made meanwhile see
+	 * the journal is not empty, so they are appended after the writes being
+	 * replayed rather than sent ahead of them.
+	 */
+	private void replayJournal() {
+		try {
+			int replayed = 0;
+			for (WriteJournal.Entry entry : journal.pending()) {
+				boolean sent = replay(entry);
+				invalidate(entry);
+				if (!sent) {
+					// A write the reachable database keeps rejecting would
+					// otherwise block every later write
+					if (!isOnline() || ++failedReplays < MAX_REPLAY_ATTEMPTS
+							|| !journal.reject(entry))
+						break;
+					localRevisions.remove(entry);
+					System.err.println("Journaled write to " + entry.getKeys()
+							+ " rejected by the database");
+				}
+				failedReplays = 0;
+				replayed++;
+			}
+			journal.removeFirst(replayed);
+
+			// No journaled write is left to check against a local revision
+			if (journal.isEmpty())
+				replayedRevisions.clear();
+		} catch (RuntimeException e) {
+			// Thrown errors would cancel every later replay
+			System.err.println("Unable to replay journal: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Sends a single journaled write to the database. A write holding a
+	 * revision is applied only if the angel still has it. The local revision
+	 * it was checked against is first replaced with the database revision it
+	 * became, while an unknown local revision never matches. A write that
+	 * conflicts is moved to the rejected file, unless the angel already has
+	 * its changes, such as when the write was sent before the station
+	 * stopped.
+	 * 
+	 * @param entry The journaled write
+	 * @return True if the write was applied or rejected, false if it could
+	 *         not be sent
+	 */
+	private boolean replay(WriteJournal.Entry entry) {
+		if (entry.getRevision() == null) {
+			Map<String, Angel> results = applyOnline(entry);
+			if (results == null)
+				return false;
+			recordReplayedRevisions(entry, results.values());
+			return true;
+		}
+
+		String key = entry.getKeys().get(0);
+		String revision = replayedRevisions.getOrDefault(
+				key + "/" + entry.getRevision(), entry.getRevision());
+		UpdateResult result = applyOnlineIfRevision(entry, revision);
+
+		switch (result.getOutcome()) {
+		case ERROR:
+			return false;
+		case UPDATED:
+			recordReplayedRevisions(entry,
+					Collections.singletonList(result.getAngel()));
+			return true;
+		case CONFLICT:
+			if (isApplied(entry, result.getAngel())) {
+				recordReplayedRevisions(entry,
+						Collections.singletonList(result.getAngel()));
+				return true;
+			}
+			break;
+		default:
+			break;
+		}
+
+		// Changed or removed by another station while the write waited
+		if (!journal.reject(entry))
+			return false;
+		localRevisions.remove(entry);
+		System.err.println("Journaled write to " + key
+				+ " conflicts with a change made by another station");
+		return true;
+	}
+
+	/**
+	 * Records the database revision of each angel the replayed write
+	 * changed, in place of the local revision the write gave it.
+	 * 
+	 * @param entry  The replayed write
+	 * @param angels The angels as written by the database, null for keys that
+	 *               were not updated
+	 */
+	private void recordReplayedRevisions(WriteJournal.Entry entry,
+			Collection<Angel> angels) {
+		String local = localRevisions.remove(entry);
+		if (local == null)
+			return;
+		for (Angel angel : angels)
+			if (angel != null)
+				replayedRevisions.put(angel.getKey() + "/" + local,
+						angel.getRevision());
+	}
+
+	/**
+	 * @param entry   A write
+	 * @param current The angel as stored within the database
+	 * @return True if the angel already has every change of the write
+	 */
+	private static boolean isApplied(WriteJournal.Entry entry,
+			Angel current) {
+		Angel applied = new Angel(current);
+		entry.getChanges().forEach(applied::set);
+
+		BaseDocument expected = applied.toDocument();
+		BaseDocument actual = current.toDocument();
+		for (String name : entry.getChanges().keySet())
+			if (!Objects.equals(expected.getAttribute(name),
+					actual.getAttribute(name)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return True if requests are being sent to the database, false while
+	 *         the circuit is open.
+	 */
+	private boolean isOnline() {
+		return db.getCircuitBreaker()
+				.getState() == CircuitBreaker.State.CLOSED;
+	}
+
+	/**
+	 * Returns the journal of writes waiting to be replayed. Its listeners can
+	 * be used to show the number of pending writes.
+	 * 
+	 * @return The write journal
+	 */
+	public WriteJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * Converts the attribute changes to the names and values stored within
+	 * the database.
+	 * 
+	 * @param changes Map of each attribute to its new value
+	 * @return Map of each attribute name to its stored value
+	 */
+	private Map<String, Object> toDocumentValues(
+			Map<Attribute, Object> changes) {
+		Map<String, Object> values = new HashMap<>();
+		for (Map.Entry<Attribute, Object> change : changes.entrySet()) {
+			Object value = change.getValue();
+
+			// Enums, such as a Status, are stored as strings
+			if (value instanceof Enum)
+				value = value.toString();
+			values.put(change.getKey().toString(), value);
+		}
+		return values;
 	}
 
 	/**
 	 * Deletes a document with the given key from the desired collection.
+	 * Angels are recorded within DELETED_ANGELS as they are deleted, so the
+	 * delta syncs of the other stations remove them as well.
 	 * 
 	 * @param key        The key of the document to delete from the collection.
 	 * @param collection The collection to which to remove the key.
@@ -147,13 +1328,429 @@ public class DatabaseController {
 	 *         deleted; otherwise false is deleted.
 	 */
 	public boolean delete(String key, DBCollection collection) {
-		return db.delete(key, collection.toString());
+		if (collection != DBCollection.ANGELS)
+			return timed("DELETE", "delete " + key,
+					() -> db.delete(key, collection.toString()),
+					removed -> removed ? 1 : 0);
+
+		// Recorded as deleted so the other stations remove it as well
+		cache.invalidate(key);
+		QueryTemplate template = QueryTemplate.DELETE_ANGEL;
+		boolean deleted = timed(template.name(), template.toString(),
+				() -> db.queryOnce(template.toString(), QueryTemplate.bindVars(
+						"key", key,
+						"@collection", collection,
+						"@deleted", DBCollection.DELETED_ANGELS),
+						BaseDocument.class) != null,
+				removed -> removed ? 1 : 0);
+
+		// Again, as a read racing the delete may have cached the angel
+		cache.invalidate(key);
+		if (deleted)
+			snapshot.remove(key);
+		return deleted;
+	}
+
+	/**
+	 * Runs the database call and records its latency under the given name.
+	 * Calls that fail are still recorded, with no results.
+	 * 
+	 * @param name        The query template or operation of the call
+	 * @param aql         The AQL sent, or a description of the operation
+	 * @param call        The database call to time
+	 * @param resultCount Returns the number of documents returned or written
+	 *                    by the call. Not called when the result is null.
+	 * @return The result of the call
+	 */
+	private <T> T timed(String name, String aql, Supplier<T> call,
+			ToIntFunction<T> resultCount) {
+		long start = System.nanoTime();
+		T result = null;
+		try {
+			result = call.get();
+			return result;
+		} finally {
+			metrics.record(name, aql, System.nanoTime() - start,
+					result == null ? 0 : resultCount.applyAsInt(result));
+		}
+	}
+
+	/**
+	 * @return The latency of the calls made through this controller
+	 */
+	public QueryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the circuit breaker guarding the requests to the database. Its
+	 * listeners can be used to show the state of the connection.
+	 * 
+	 * @return The circuit breaker of the database
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return db.getCircuitBreaker();
+	}
+
+	/**
+	 * Runs the database call on one of the database worker threads so that the
+	 * calling thread, usually the JavaFX thread, is not blocked.
+	 * 
+	 * @param call The database call to run
+	 * @return A CompletableFuture that completes with the result of the call
+	 */
+	@Override
+	public <T> CompletableFuture<T> async(Supplier<T> call) {
+		return CompletableFuture.supplyAsync(call, executor);
+	}
+
+	/**
+	 * Asynchronous version of query(). See query() for more information.
+	 * 
+	 * @param query The aql query command for the collection
+	 * @return A CompletableFuture that completes with the results of the query.
+	 *         The results are null if the query is inconclusive.
+	 */
+	public CompletableFuture<List<Angel>> queryAsync(String query) {
+		return async(() -> query(query));
+	}
+
+	/**
+	 * Asynchronous version of query() using a registered query template. See
+	 * query() for more information.
+	 * 
+	 * @param template The registered query template
+	 * @param bindVars The values for the bind variables within the template
+	 * @return A CompletableFuture that completes with the results of the query.
+	 *         The results are null if the query is inconclusive.
+	 */
+	public CompletableFuture<List<Angel>> queryAsync(QueryTemplate template,
+			Map<String, Object> bindVars) {
+		return async(() -> query(template, bindVars));
+	}
+
+	/**
+	 * Asynchronous version of stream(). See stream() for more information. The
+	 * consumer is called on a database worker thread.
+	 * 
+	 * @param template  The aql query containing bind variables
+	 * @param bindVars  The values for the bind variables within the template
+	 * @param batchSize The number of angels fetched from the database at once
+	 * @param consumer  Receives each of the angels returned by the query
+	 * @return A CompletableFuture that completes with true if every result was
+	 *         streamed; otherwise false.
+	 */
+	public CompletableFuture<Boolean> streamAsync(String template,
+			Map<String, Object> bindVars, int batchSize,
+			Consumer<Angel> consumer) {
+		return async(() -> stream(template, bindVars, batchSize, consumer));
+	}
+
+	/**
+	 * Asynchronous version of insertAngel(). See insertAngel() for more
+	 * information.
+	 * 
+	 * @param angel      The angel that will be added to the desired collection
+	 * @param collection The collection in which to add the angel
+	 * @return A CompletableFuture that completes with the outcome of inserting
+	 *         the angel.
+	 */
+	public CompletableFuture<InsertOutcome> insertAsync(Angel angel,
+			DBCollection collection) {
+		return async(() -> insertAngel(angel, collection));
+	}
+
+	/**
+	 * Asynchronous version of update(). See update() for more information.
+	 * 
+	 * @param key        String representing the key of the document being
+	 *                   updated
+	 * @param attribute  The attribute to update within the document.
+	 * @param value      The value of the new attribute
+	 * @param collection The collection in which to search for the key
+	 * @return A CompletableFuture that completes once the update has run
+	 */
+	public CompletableFuture<Void> updateAsync(String key, Object attribute,
+			Object value, DBCollection collection) {
+		return async(() -> {
+			update(key, attribute, value, collection);
+			return null;
+		});
+	}
+
+	/**
+	 * Asynchronous version of updateAll(). See updateAll() for more
+	 * information.
+	 * 
+	 * @param keys       The keys of the documents being updated
+	 * @param changes    Map of each attribute to update to its new value
+	 * @param collection The collection in which to search for the keys
+	 * @return A CompletableFuture that completes with the map of each key to
+	 *         its updated angel, or null if the request was unsuccessful.
+	 */
+	public CompletableFuture<Map<String, Angel>> updateAllAsync(
+			Collection<String> keys, Map<Attribute, Object> changes,
+			DBCollection collection) {
+		return async(() -> updateAll(keys, changes, collection));
+	}
+
+	/**
+	 * Asynchronous version of delete(). See delete() for more information.
+	 * 
+	 * @param key        The key of the document to delete from the collection.
+	 * @param collection The collection to which to remove the key.
+	 * @return A CompletableFuture that completes with true if the document was
+	 *         deleted; otherwise false.
+	 */
+	public CompletableFuture<Boolean> deleteAsync(String key,
+			DBCollection collection) {
+		return async(() -> delete(key, collection));
+	}
+
+	@Override
+	public InsertOutcome insert(Angel angel) {
+		return insertAngel(angel, DBCollection.ANGELS);
+	}
+
+	@Override
+	public Map<String, InsertOutcome> insertAll(Collection<Angel> angels) {
+		return insertAngels(angels, DBCollection.ANGELS);
+	}
+
+	@Override
+	public boolean contains(String id) {
+		return contains(id, DBCollection.ANGELS);
+	}
+
+	@Override
+	public Angel get(String id) {
+		return getAngel(id, DBCollection.ANGELS);
+	}
+
+	@Override
+	public List<Angel> findByIDNumber(int number) {
+		if (isSnapshotCurrent())
+			return snapshot.findByIDNumber(number);
+		return query(QueryTemplate.ANGELS_BY_ID_NUMBER, QueryTemplate.bindVars(
+				"number", number,
+				"@collection", DBCollection.ANGELS));
+	}
+
+	/**
+	 * Served by the snapshot once it has been filled, even while it is not
+	 * current, as the IDs of angels are never changed and a status a few
+	 * seconds behind is enough to show the angels. See
+	 * AngelRepository.lookupIDNumber().
+	 */
+	@Override
+	public List<Angel> lookupIDNumber(int number) {
+		if (deltaSync.hasSynced())
+			return snapshot.findByIDNumber(number);
+		return findByIDNumber(number);
+	}
+
+	@Override
+	public List<Angel> findByStatus(Status status, int limit) {
+		if (isSnapshotCurrent())
+			return snapshot.query(QueryTemplate.ANGELS_BY_STATUS.name(),
+					QueryTemplate.bindVars("status", status, "limit", limit));
+		return query(QueryTemplate.ANGELS_BY_STATUS, QueryTemplate.bindVars(
+				"status", status,
+				"limit", limit,
+				"@collection", DBCollection.ANGELS));
+	}
+
+	@Override
+	public List<Angel> search(List<SearchCriterion> criteria) {
+		if (isSnapshotCurrent())
+			return snapshot.search(criteria);
+
+		// Searching the view, in order of relevance, where it can be used
+		Map<String, Object> bindVars = new HashMap<>();
+		String aql = searchView ? SearchView.compile(criteria, bindVars)
+				: null;
+		if (aql != null) {
+			List<Angel> results = query(SearchView.QUERY_NAME, aql, bindVars);
+			if (results == null && !isOnline())
+				return snapshot.search(criteria);
+			return results;
+		}
+
+		return query(QueryTemplate.SEARCH_ANGELS, QueryTemplate.bindVars(
+				"criteria", toBindVar(criteria),
+				"@collection", DBCollection.ANGELS));
+	}
+
+	/**
+	 * Every page of a search is read from the source of its first page, the
+	 * snapshot or the database, as the database orders the suffixes of IDs
+	 * by its own collation, so switching while the search is scrolled could
+	 * skip or repeat angels. See AngelRepository.searchPage().
+	 */
+	@Override
+	public List<Angel> searchPage(List<SearchCriterion> criteria,
+			String afterID, int limit) {
+		String search = FacetCache.signature(criteria) + "\n";
+		Boolean fromSnapshot = afterID == null ? null
+				: pageSources.get(search + afterID);
+		if (fromSnapshot == null)
+			fromSnapshot = isSnapshotCurrent();
+
+		List<Angel> page;
+		if (fromSnapshot) {
+			page = snapshot.searchPage(criteria, afterID, limit);
+		} else {
+			// Later pages are read again once scrolled, rather than from the
+			// snapshot while offline
+			page = readPage(criteria, afterID, limit);
+			if (page == null && afterID == null && !isOnline()) {
+				fromSnapshot = true;
+				page = snapshot.searchPage(criteria, afterID, limit);
+			}
+		}
+
+		// A full page may be followed by another
+		if (page != null && page.size() == limit && limit > 0)
+			pageSources.put(search + page.get(limit - 1).getKey(),
+					fromSnapshot);
+		return page;
+	}
+
+	/**
+	 * Reads a page from the search view where it can be used, sorting only
+	 * the angels found by ID. Otherwise it is read from the ID index of the
+	 * database, starting after the ID.
+	 * 
+	 * @param criteria The criteria each angel must match
+	 * @param afterID  The ID the page starts after. Null for the first page.
+	 * @param limit    The maximum number of angels within the page
+	 * @return The matching angels. Null if the query was unsuccessful.
+	 */
+	private List<Angel> readPage(List<SearchCriterion> criteria,
+			String afterID, int limit) {
+		Map<String, Object> bindVars = new HashMap<>();
+		String aql = searchView
+				? SearchView.compilePage(criteria, afterID, limit, bindVars)
+				: null;
+		if (aql != null)
+			return query(SearchView.PAGE_QUERY_NAME, aql, bindVars);
+
+		// The first page starts after every ID, as no number is negative
+		return query(QueryTemplate.SEARCH_ANGELS_PAGE,
+				QueryTemplate.bindVars(
+						"criteria", toBindVar(criteria),
+						"afterNumber", afterID == null ? -1
+								: Angel.parseIDNumber(afterID),
+						"afterSuffix", afterID == null ? ""
+								: Angel.parseIDSuffix(afterID),
+						"afterID", afterID == null ? "" : afterID,
+						"limit", limit,
+						"@collection", DBCollection.ANGELS));
+	}
+
+	/**
+	 * Counts are cached for each search until an angel changes within the
+	 * snapshot, or for at most FACET_MAX_AGE. See AngelRepository.countFacets().
+	 */
+	@Override
+	public FacetCounts countFacets(List<SearchCriterion> criteria) {
+		String signature = FacetCache.signature(criteria);
+		long version = snapshot.getVersion();
+		FacetCounts counts = facets.get(signature, version);
+		if (counts != null)
+			return counts;
+
+		if (isSnapshotCurrent()) {
+			counts = snapshot.countFacets(criteria);
+		} else {
+			QueryTemplate template = QueryTemplate.FACET_COUNTS;
+			counts = timed(template.name(), template.toString(), () -> {
+				@SuppressWarnings("rawtypes")
+				ArangoCursor<Map> groups = db.query(template.toString(),
+						QueryTemplate.bindVars(
+								"criteria", toBindVar(criteria),
+								"ageBand", FacetCounts.AGE_BAND,
+								"statuses", FacetCounts.STATUSES,
+								"genders", FacetCounts.GENDERS,
+								"@collection", DBCollection.ANGELS),
+						Map.class);
+
+				// Query result was unsuccessful
+				if (groups == null)
+					return null;
+				return FacetCounts.fromGroups(groups);
+			}, result -> 1);
+
+			// Counting the snapshot while the database cannot be reached
+			if (counts == null && !isOnline())
+				return snapshot.countFacets(criteria);
+		}
+
+		if (counts != null)
+			facets.put(signature, version, counts);
+		return counts;
+	}
+
+	/**
+	 * @param criteria The criteria of a search
+	 * @return The criteria as the bind variable of the SEARCH_ANGELS queries
+	 */
+	private static List<Map<String, Object>> toBindVar(
+			List<SearchCriterion> criteria) {
+		List<Map<String, Object>> values = new ArrayList<>();
+		for (SearchCriterion criterion : criteria)
+			values.add(criterion.toBindVar());
+		return values;
+	}
+
+	@Override
+	public Angel update(String id, Map<Attribute, Object> changes) {
+		return updateAttributes(id, changes, DBCollection.ANGELS);
+	}
+
+	@Override
+	public Map<String, Angel> updateAll(Collection<String> ids,
+			Map<Attribute, Object> changes) {
+		return updateAll(ids, changes, DBCollection.ANGELS);
+	}
+
+	@Override
+	public UpdateResult updateIfUnchanged(Angel angel,
+			Map<Attribute, Object> changes) {
+		return updateIfUnchanged(angel, changes, DBCollection.ANGELS);
+	}
+
+	@Override
+	public boolean delete(String id) {
+		return delete(id, DBCollection.ANGELS);
+	}
+
+	@Override
+	public List<Angel> fetchChangedSince(long stamp) {
+		return query(QueryTemplate.ANGELS_CHANGED_SINCE, QueryTemplate.bindVars(
+				"since", stamp,
+				"@collection", DBCollection.ANGELS));
+	}
+
+	@Override
+	public boolean scan(AngelFilter filter, Consumer<Angel> consumer) {
+		return stream(filter.toAql(), filter.bindVars(DBCollection.ANGELS),
+				DEFAULT_BATCH_SIZE, consumer);
 	}
 
 	/**
-	 * Closes the connection to the database.
+	 * Closes the connection pool to the database. This should only be called
+	 * when the application is closing as the database can no longer be used
+	 * afterwards. The latency of every query, along with the cache and delta
+	 * sync counts, is written to the slow query log.
 	 */
+	@Override
 	public void close() {
+		metrics.log(cache + " " + deltaSync + System.lineSeparator()
+				+ metrics.report());
+		scheduler.shutdownNow();
+		executor.shutdownNow();
+		journal.close();
 		db.shutdown();
 	}
 }
@@ -0,0 +1,131 @@
+/**
+ * This class keeps a local mirror of a collection current by fetching only
+ * the angels written since the last fetch, rather than re-reading the whole
+ * collection. Every write sets the update stamp of the angel, so the angels
+ * changed since a fetch are those with a stamp at or after the newest stamp
+ * seen by that fetch.
+ *
+ * Every stamp is the time of the database, so stamps from every station come
+ * from a single clock. Stamps are not assigned in the order writes finish, so
+ * each fetch starts an overlap before the newest stamp seen. Angels within
+ * the overlap are fetched again, which is harmless as applying an angel twice
+ * leaves the same mirror.
+ *
+ * Deleted angels leave no document to carry the stamp, so the source also
+ * passes on the angels removed since the stamp, recorded with the time they
+ * were removed.
+ *
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.function.Consumer;
+
+import angels.Angel;
+
+public class DeltaSync {
+
+	// Milliseconds before the newest stamp seen that each fetch starts at.
+	// Covers writes stamped before, but finished after, a newer write.
+	public static final long DEFAULT_OVERLAP = 30 * 1000;
+
+	/**
+	 * The source of the changed angels, usually the database.
+	 */
+	public interface Source {
+
+		/**
+		 * Passes each angel written at or after the stamp to the consumer,
+		 * and removes the angels deleted at or after the stamp from the
+		 * mirror.
+		 *
+		 * @param since    The update stamp, in milliseconds. 0 to fetch every
+		 *                 angel.
+		 * @param consumer Receives each of the changed angels
+		 * @return True if every changed angel was fetched; otherwise false is
+		 *         returned.
+		 */
+		boolean fetch(long since, Consumer<Angel> consumer);
+	}
+
+	private final Source source;
+	private final long overlap;
+
+	// Newest update stamp seen, 0 until the first fetch completes
+	private volatile long newestStamp = 0;
+
+	// Time, in milliseconds, the last successful fetch started
+	private volatile long lastSync = 0;
+
+	/**
+	 * @param source  The source of the changed angels. Applies each fetched
+	 *                angel to the mirror.
+	 * @param overlap Milliseconds before the newest stamp seen that each
+	 *                fetch starts at
+	 */
+	public DeltaSync(Source source, long overlap) {
+		if (overlap < 0)
+			throw new IllegalArgumentException(
+					"Overlap must not be negative: " + overlap);
+		this.source = source;
+		this.overlap = overlap;
+	}
+
+	/**
+	 * Fetches the angels written since the last fetch. The first fetch reads
+	 * every angel.
+	 *
+	 * @return The number of angels fetched, -1 if the fetch was unsuccessful.
+	 */
+	public synchronized int sync() {
+		long started = System.currentTimeMillis();
+		long since = newestStamp == 0 ? 0 : Math.max(1, newestStamp - overlap);
+
+		int[] fetched = { 0 };
+		long[] newest = { newestStamp };
+		boolean complete = source.fetch(since, angel -> {
+			newest[0] = Math.max(newest[0], angel.getUpdateStamp());
+			fetched[0]++;
+		});
+
+		// Partly fetched changes are fetched again by the next sync
+		if (!complete)
+			return -1;
+
+		newestStamp = newest[0];
+		lastSync = started;
+		return fetched[0];
+	}
+
+	/**
+	 * @param maxAge Milliseconds since the last successful fetch for the
+	 *               mirror to be considered current
+	 * @return True if the mirror was synced within the maximum age
+	 */
+	public boolean isCurrent(long maxAge) {
+		return lastSync > 0 && System.currentTimeMillis() - lastSync <= maxAge;
+	}
+
+	/**
+	 * @return True if every angel has been fetched at least once, even if the
+	 *         mirror is no longer current
+	 */
+	public boolean hasSynced() {
+		return lastSync > 0;
+	}
+
+	/**
+	 * @return The newest update stamp seen, 0 if nothing has been fetched
+	 */
+	public long getNewestStamp() {
+		return newestStamp;
+	}
+
+	@Override
+	public String toString() {
+		return "Delta sync: newest stamp " + newestStamp + ", last synced "
+				+ (lastSync == 0 ? "never"
+						: (System.currentTimeMillis() - lastSync) + " ms ago");
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * This class is a bounded cache of the facet counts of recent searches, keyed
+ * by the signature of the search criteria. Criteria differing only in order
+ * or case share a signature, as they match the same angels.
+ *
+ * Counts are only used while no angel has changed within the snapshot since
+ * they were counted, and for at most the maximum age, as changes made by
+ * other stations are only seen by the snapshot while it is kept current.
+ *
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FacetCache {
+
+	private final int capacity;
+	private final long maxAge;
+	private final Map<String, Entry> entries;
+
+	/**
+	 * Counts along with the snapshot version and time they were counted at.
+	 */
+	private static class Entry {
+		private final FacetCounts counts;
+		private final long version;
+		private final long counted;
+
+		private Entry(FacetCounts counts, long version, long counted) {
+			this.counts = counts;
+			this.version = version;
+			this.counted = counted;
+		}
+	}
+
+	/**
+	 * @param capacity The maximum number of searches with cached counts
+	 * @param maxAge   Milliseconds the counts are used for
+	 */
+	public FacetCache(int capacity, long maxAge) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException(
+					"Cache capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		this.maxAge = maxAge;
+
+		// Access ordered so the least recently used counts are removed first
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> e) {
+				return size() > FacetCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * @param signature The signature of the search criteria
+	 * @param version   The current version of the snapshot
+	 * @return The cached counts. Null if the counts are not cached, or angels
+	 *         may have changed since they were counted.
+	 */
+	public synchronized FacetCounts get(String signature, long version) {
+		Entry entry = entries.get(signature);
+		if (entry == null)
+			return null;
+
+		if (entry.version != version
+				|| System.currentTimeMillis() - entry.counted > maxAge) {
+			entries.remove(signature);
+			return null;
+		}
+		return entry.counts;
+	}
+
+	/**
+	 * @param signature The signature of the search criteria
+	 * @param version   The version of the snapshot the counts were read at
+	 * @param counts    The counts of the angels matching the criteria
+	 */
+	public synchronized void put(String signature, long version,
+			FacetCounts counts) {
+		entries.put(signature,
+				new Entry(counts, version, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Returns the signature of the search criteria, the same for any criteria
+	 * matching the same angels, ex: WISH~lego for a WISH containing Lego.
+	 *
+	 * @param criteria The search criteria
+	 * @return The signature of the criteria
+	 */
+	public static String signature(List<SearchCriterion> criteria) {
+		List<String> parts = new ArrayList<>();
+		for (SearchCriterion criterion : criteria)
+			parts.add(criterion.getAttribute()
+					+ (criterion.isExact() ? "=" : "~")
+					+ criterion.getKeyword().toLowerCase());
+		parts.sort(null);
+		return String.join("\n", parts);
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * This class holds the number of angels with each value of the attributes
+ * operators filter by, such as how many matching angels are on hold or are
+ * girls, so the effect of a search or export can be seen before it is run.
+ * Ages are counted in bands of AGE_BAND years, ex: 3-5.
+ *
+ * Angels missing an attribute, or with a status or gender that is not known,
+ * are counted under NONE.
+ *
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import angels.Angel;
+import angels.Attribute;
+import angels.Gender;
+import angels.Status;
+
+public class FacetCounts {
+
+	public enum Facet {
+		STATUS, 	// Status of the angel, ex: HOLD
+		GENDER, 	// Gender of the angel, ex: girl
+		AGE, 		// Age band of the angel, ex: 3-5
+		LOCATION; 	// Current location of the angel
+	}
+
+	// Years within each age band
+	public static final int AGE_BAND = 3;
+
+	// Value the angels missing an attribute are counted under
+	public static final String NONE = "NONE";
+
+	// Statuses and genders counted by the database, as any other value is
+	// not read by Angel and is counted under NONE
+	static final List<String> STATUSES = names(Status.values());
+	static final List<String> GENDERS = names(Gender.values());
+
+	private final Map<Facet, Map<String, Long>> counts = new EnumMap<>(
+			Facet.class);
+	private long total = 0;
+
+	/**
+	 * Creates counts of no angels.
+	 */
+	FacetCounts() {
+		for (Facet facet : Facet.values())
+			counts.put(facet, new LinkedHashMap<>());
+	}
+
+	/**
+	 * Counts the angel under its value of each facet.
+	 *
+	 * @param angel The angel to count
+	 */
+	void add(Angel angel) {
+		add(Facet.STATUS, angel.get(Attribute.STATUS), 1);
+		add(Facet.GENDER, angel.get(Attribute.GENDER), 1);
+		add(Facet.AGE, angel.getAge() < 0 ? null : ageBand(angel.getAge()),
+				1);
+		add(Facet.LOCATION, angel.get(Attribute.LOCATION), 1);
+		total++;
+	}
+
+	/**
+	 * Adds to the count of angels with the value of the facet.
+	 *
+	 * @param facet The facet
+	 * @param value The value of the facet, null if the angels are missing it
+	 * @param count The number of angels with the value
+	 */
+	void add(Facet facet, Object value, long count) {
+		counts.get(facet).merge(value == null ? NONE : value.toString(), count,
+				Long::sum);
+	}
+
+	/**
+	 * @return The number of angels counted
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param facet The facet
+	 * @return The number of angels with each value of the facet, the most
+	 *         common value first
+	 */
+	public Map<String, Long> get(Facet facet) {
+		List<Map.Entry<String, Long>> entries = new ArrayList<>(
+				counts.get(facet).entrySet());
+		entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+		Map<String, Long> sorted = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : entries)
+			sorted.put(entry.getKey(), entry.getValue());
+		return Collections.unmodifiableMap(sorted);
+	}
+
+	/**
+	 * Reads the counts returned by the FACET_COUNTS query, a group for each
+	 * combination of the values of the facets along with its count.
+	 *
+	 * @param groups The groups returned by the query
+	 * @return The counts of every group
+	 */
+	static FacetCounts fromGroups(Iterator<?> groups) {
+		FacetCounts counts = new FacetCounts();
+		while (groups.hasNext()) {
+			Map<?, ?> group = (Map<?, ?>) groups.next();
+			long count = ((Number) group.get("count")).longValue();
+			for (Facet facet : Facet.values())
+				counts.add(facet, group.get(facet.name()), count);
+			counts.total += count;
+		}
+		return counts;
+	}
+
+	/**
+	 * @param values The values of an enum
+	 * @return The values as stored within the database
+	 */
+	private static List<String> names(Enum<?>[] values) {
+		List<String> names = new ArrayList<>();
+		for (Enum<?> value : values)
+			names.add(value.toString());
+		return Collections.unmodifiableList(names);
+	}
+
+	/**
+	 * @param age The age of an angel
+	 * @return The age band of the age, ex: 3-5 for 4
+	 */
+	public static String ageBand(int age) {
+		int start = age / AGE_BAND * AGE_BAND;
+		return start + "-" + (start + AGE_BAND - 1);
+	}
+
+	/**
+	 * @return The counts of each facet on a line, ex: STATUS: HOLD 3,
+	 *         COMPLETE 1
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (Facet facet : Facet.values()) {
+			if (text.length() > 0)
+				text.append('\n');
+			text.append(facet).append(':');
+
+			String separator = " ";
+			for (Map.Entry<String, Long> count : get(facet).entrySet()) {
+				text.append(separator).append(count.getKey()).append(' ')
+						.append(count.getValue());
+				separator = ", ";
+			}
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,297 @@
+/**
+ * This class is an AngelRepository that keeps every angel in memory rather
+ * than within ArangoDB. It has the same behavior as DatabaseController, so the
+ * full controller logic can be run, benchmarked or tested without a database.
+ * Nothing is saved once the application closes.
+ * 
+ * Angels are kept in ascending order by ID, ex: 9A before 10A. Each stored
+ * angel is a copy, so changing an angel returned by the repository does not
+ * change the stored angel, the same as with a database. The repository is
+ * safe to use from many threads at once.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import angels.Angel;
+import angels.Attribute;
+import angels.Status;
+
+public class InMemoryAngelRepository implements AngelRepository {
+
+	// Number of threads used to run calls off the JavaFX thread
+	private static final int ASYNC_THREADS = 4;
+
+	private final ConcurrentNavigableMap<String, Angel> angels = new ConcurrentSkipListMap<>(
+			Angel.ID_ORDER);
+	private final AtomicLong revision = new AtomicLong();
+	private final ExecutorService executor;
+
+	/**
+	 * Creates an empty repository.
+	 */
+	public InMemoryAngelRepository() {
+		// Daemon threads so pending calls never keep the application open
+		executor = Executors.newFixedThreadPool(ASYNC_THREADS, runnable -> {
+			Thread thread = new Thread(runnable, "memory-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public InsertOutcome insert(Angel angel) {
+		String id = (String) angel.get(Attribute.ID);
+		if (id == null)
+			return InsertOutcome.ERROR;
+
+		Angel stored = copy(angel, null);
+		return angels.putIfAbsent(id, stored) == null ? InsertOutcome.INSERTED
+				: InsertOutcome.DUPLICATE;
+	}
+
+	@Override
+	public Map<String, InsertOutcome> insertAll(Collection<Angel> angels) {
+		Map<String, InsertOutcome> outcomes = new LinkedHashMap<>();
+		for (Angel angel : angels)
+			outcomes.put((String) angel.get(Attribute.ID), insert(angel));
+		return outcomes;
+	}
+
+	@Override
+	public boolean contains(String id) {
+		return angels.containsKey(id);
+	}
+
+	@Override
+	public Angel get(String id) {
+		Angel angel = angels.get(id);
+		return angel == null ? null : copy(angel, null);
+	}
+
+	@Override
+	public List<Angel> findByIDNumber(int number) {
+		List<Angel> results = new ArrayList<>();
+
+		// IDs with the number are next to each other, so only they are read
+		for (Map.Entry<String, Angel> entry : angels
+				.tailMap(String.valueOf(number)).entrySet()) {
+			if (entry.getValue().getIDNumber() != number)
+				break;
+			if (entry.getValue().getIDSuffix().length() == 1)
+				results.add(copyOf(entry));
+		}
+		return results;
+	}
+
+	@Override
+	public List<Angel> findByStatus(Status status, int limit) {
+		List<Angel> results = new ArrayList<>();
+		for (Map.Entry<String, Angel> entry : angels.entrySet()) {
+			if (results.size() >= limit)
+				break;
+			if (status.toString().equals(
+					String.valueOf(entry.getValue().get(Attribute.STATUS))))
+				results.add(copyOf(entry));
+		}
+		return results;
+	}
+
+	@Override
+	public List<Angel> search(List<SearchCriterion> criteria) {
+		List<Angel> results = new ArrayList<>();
+		for (Map.Entry<String, Angel> entry : angels.entrySet()) {
+			boolean matches = true;
+			for (SearchCriterion criterion : criteria)
+				matches &= criterion.matches(entry.getValue());
+			if (matches)
+				results.add(copyOf(entry));
+		}
+		return results;
+	}
+
+	@Override
+	public List<Angel> searchPage(List<SearchCriterion> criteria,
+			String afterID, int limit) {
+		List<Angel> results = new ArrayList<>();
+
+		// Angels are in order by ID, so the page is read from the ID on
+		Map<String, Angel> after = afterID == null ? angels
+				: angels.tailMap(afterID, false);
+		for (Map.Entry<String, Angel> entry : after.entrySet()) {
+			if (results.size() >= limit)
+				break;
+
+			boolean matches = true;
+			for (SearchCriterion criterion : criteria)
+				matches &= criterion.matches(entry.getValue());
+			if (matches)
+				results.add(copyOf(entry));
+		}
+		return results;
+	}
+
+	@Override
+	public FacetCounts countFacets(List<SearchCriterion> criteria) {
+		FacetCounts counts = new FacetCounts();
+		for (Angel angel : angels.values()) {
+			boolean matches = true;
+			for (SearchCriterion criterion : criteria)
+				matches &= criterion.matches(angel);
+			if (matches)
+				counts.add(angel);
+		}
+		return counts;
+	}
+
+	@Override
+	public Angel update(String id, Map<Attribute, Object> changes) {
+		Map<String, Object> values = toDocumentValues(changes);
+
+		// Applied atomically, so concurrent updates never lose changes
+		Angel updated = angels.computeIfPresent(id,
+				(key, angel) -> copy(angel, values));
+		return updated == null ? null : copy(updated, null);
+	}
+
+	@Override
+	public Map<String, Angel> updateAll(Collection<String> ids,
+			Map<Attribute, Object> changes) {
+		Map<String, Angel> results = new LinkedHashMap<>();
+		for (String id : ids)
+			results.put(id, update(id, changes));
+		return results;
+	}
+
+	@Override
+	public UpdateResult updateIfUnchanged(Angel angel,
+			Map<Attribute, Object> changes) {
+		String id = angel.getKey();
+		Map<String, Object> values = toDocumentValues(changes);
+
+		// Revision compared and changes applied atomically
+		boolean[] conflict = { false };
+		Angel stored = angels.computeIfPresent(id, (key, current) -> {
+			conflict[0] = !Objects.equals(current.getRevision(),
+					angel.getRevision());
+			return conflict[0] ? current
+					: copy(current, values);
+		});
+
+		if (stored == null)
+			return UpdateResult.notFound();
+		Angel copy = copy(stored, null);
+		return conflict[0] ? UpdateResult.conflict(copy)
+				: UpdateResult.updated(copy);
+	}
+
+	@Override
+	public boolean delete(String id) {
+		return angels.remove(id) != null;
+	}
+
+	@Override
+	public List<Angel> fetchChangedSince(long stamp) {
+		List<Angel> results = new ArrayList<>();
+		for (Map.Entry<String, Angel> entry : angels.entrySet())
+			if (entry.getValue().getUpdateStamp() >= stamp)
+				results.add(copyOf(entry));
+		results.sort(Comparator.comparingLong(Angel::getUpdateStamp));
+		return results;
+	}
+
+	@Override
+	public boolean scan(AngelFilter filter, Consumer<Angel> consumer) {
+		for (Map.Entry<String, Angel> entry : angels.entrySet())
+			if (filter.matches(entry.getValue()))
+				consumer.accept(copyOf(entry));
+		return true;
+	}
+
+	@Override
+	public <T> CompletableFuture<T> async(Supplier<T> call) {
+		return CompletableFuture.supplyAsync(call, executor);
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return The number of angels within the repository
+	 */
+	public int size() {
+		return angels.size();
+	}
+
+	/**
+	 * Converts the attribute changes to the names and values stored within
+	 * each angel.
+	 * 
+	 * @param changes Map of each attribute to its new value
+	 * @return Map of each attribute name to its stored value
+	 */
+	private Map<String, Object> toDocumentValues(
+			Map<Attribute, Object> changes) {
+		Map<String, Object> values = new HashMap<>();
+		for (Map.Entry<Attribute, Object> change : changes.entrySet()) {
+			Object value = change.getValue();
+
+			// Enums, such as a Status, are stored as strings
+			if (value instanceof Enum)
+				value = value.toString();
+			values.put(change.getKey().toString(), value);
+		}
+		return values;
+	}
+
+	/**
+	 * @param entry A stored angel and its ID
+	 * @return A copy of the stored angel
+	 */
+	private Angel copyOf(Map.Entry<String, Angel> entry) {
+		return copy(entry.getValue(), null);
+	}
+
+	/**
+	 * Copies an angel, optionally applying changes. A new revision is given
+	 * when changes are applied, the same as the database, which is also used
+	 * as the update stamp of the angel.
+	 * 
+	 * @param angel   The angel to copy
+	 * @param changes Map of each attribute name to its new value, or null if
+	 *                the angel is only copied
+	 * @return The copy of the angel
+	 */
+	private Angel copy(Angel angel, Map<String, Object> changes) {
+		Angel copy = new Angel(angel);
+		copy.setCollection(DBCollection.ANGELS.toString());
+		if (changes != null || angel.getRevision() == null) {
+			if (changes != null)
+				changes.forEach(copy::set);
+			long next = revision.incrementAndGet();
+			copy.setRevision(Long.toString(next));
+			copy.setUpdateStamp(next);
+		}
+		return copy;
+	}
+}
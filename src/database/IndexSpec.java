@@ -0,0 +1,70 @@
+/**
+ * This class describes an index that should exist on a collection. The
+ * indexes for each collection are declared within DBCollection and are
+ * created, if missing, when the application starts.
+ * 
+ * A field ending in [*], such as MISSING[*], indexes each value of an array
+ * attribute rather than the array as a whole.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class IndexSpec {
+
+	private final List<String> fields;
+	private final boolean unique;
+	private final boolean sparse;
+
+	/**
+	 * @param fields The attributes covered by the index, in order
+	 * @param unique True if two documents may not share the same values
+	 * @param sparse True if documents missing the attributes are not indexed
+	 */
+	private IndexSpec(List<String> fields, boolean unique, boolean sparse) {
+		this.fields = Collections.unmodifiableList(fields);
+		this.unique = unique;
+		this.sparse = sparse;
+	}
+
+	/**
+	 * Creates a non-unique persistent index over the fields.
+	 * 
+	 * @param fields The attributes covered by the index, in order
+	 * @return The description of the index
+	 */
+	public static IndexSpec persistent(String... fields) {
+		return new IndexSpec(Arrays.asList(fields), false, false);
+	}
+
+	/**
+	 * @return The attributes covered by the index, in order
+	 */
+	public List<String> getFields() {
+		return fields;
+	}
+
+	/**
+	 * @return True if two documents may not share the same values
+	 */
+	public boolean isUnique() {
+		return unique;
+	}
+
+	/**
+	 * @return True if documents missing the attributes are not indexed
+	 */
+	public boolean isSparse() {
+		return sparse;
+	}
+
+	@Override
+	public String toString() {
+		return "persistent" + fields;
+	}
+}
@@ -0,0 +1,16 @@
+/**
+ * This class represents the different outcomes of inserting a document into
+ * the database. These outcomes are used to report the result of each document
+ * when many documents are inserted at once.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+public enum InsertOutcome {
+
+	INSERTED, 	// Document was added to the collection
+	DUPLICATE, 	// Document with the same key already exists
+	ERROR; 		// Document could not be added for any other reason
+}
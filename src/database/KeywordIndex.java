@@ -0,0 +1,263 @@
+/**
+ * This class is an inverted index of the words within the free text
+ * attributes of the angels, the wishes, books and special requests. Each word,
+ * in lower case, maps to the keys of the angels having the word within the
+ * attribute.
+ *
+ * A search keyword is matched against any part of a value, ex: the keyword ego
+ * matches Lego set, so the index finds the angels that may match a keyword
+ * rather than those that do. Each word of the keyword must be part of a word
+ * of the value, so only the angels having, for every word of the keyword, a
+ * word containing it are returned. These must still be checked with
+ * SearchCriterion.matches().
+ *
+ * The words containing a part of the keyword are found through the pieces,
+ * of up to three characters, of every word. A part of up to three characters
+ * is looked up directly, while a longer part is looked up by each three
+ * characters it is made of, ex: lego by leg and ego, and the words having
+ * all of them are checked to contain the part.
+ *
+ * Lookups may run from any thread while the index is changed.
+ *
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import angels.Angel;
+import angels.Attribute;
+
+public class KeywordIndex {
+
+	// Attributes of free text, searched by keyword
+	private static final Attribute[] INDEXED = { Attribute.WISH,
+			Attribute.BOOK, Attribute.SPECIAL };
+
+	// Characters within the longest piece of a word
+	private static final int GRAM_LENGTH = 3;
+
+	// Words of each attribute mapped to the keys of angels having the word
+	private final Map<Attribute, Map<String, Set<String>>> postings = new EnumMap<>(
+			Attribute.class);
+
+	// Pieces of the words of each attribute mapped to the words having them
+	private final Map<Attribute, Map<String, Set<String>>> grams = new EnumMap<>(
+			Attribute.class);
+
+	// Angel each key was last indexed as, so its words can be removed
+	private final Map<String, Angel> indexed = new HashMap<>();
+
+	/**
+	 * Creates an empty index.
+	 */
+	public KeywordIndex() {
+		for (Attribute attribute : INDEXED) {
+			postings.put(attribute, new ConcurrentHashMap<>());
+			grams.put(attribute, new ConcurrentHashMap<>());
+		}
+	}
+
+	/**
+	 * @param attribute An attribute of an angel
+	 * @return True if the words of the attribute are indexed
+	 */
+	public boolean isIndexed(Attribute attribute) {
+		return postings.containsKey(attribute);
+	}
+
+	/**
+	 * Indexes the words of the angel, replacing the words the key was
+	 * previously indexed with.
+	 *
+	 * @param key   The document key of the angel
+	 * @param angel The angel with the key. Null removes the key from the
+	 *              index.
+	 */
+	public synchronized void put(String key, Angel angel) {
+		Angel previous = angel == null ? indexed.remove(key)
+				: indexed.put(key, angel);
+
+		for (Map.Entry<Attribute, Map<String, Set<String>>> entry : postings
+				.entrySet()) {
+			Set<String> before = words(previous, entry.getKey());
+			Set<String> after = words(angel, entry.getKey());
+			Map<String, Set<String>> words = entry.getValue();
+			Map<String, Set<String>> pieces = grams.get(entry.getKey());
+
+			for (String word : before) {
+				if (after.contains(word))
+					continue;
+				Set<String> keys = words.get(word);
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					words.remove(word);
+					for (String piece : pieces(word)) {
+						Set<String> having = pieces.get(piece);
+						having.remove(word);
+						if (having.isEmpty())
+							pieces.remove(piece);
+					}
+				}
+			}
+			for (String word : after) {
+				if (before.contains(word))
+					continue;
+				Set<String> keys = words.get(word);
+				if (keys == null) {
+					keys = ConcurrentHashMap.newKeySet();
+					words.put(word, keys);
+					for (String piece : pieces(word))
+						pieces.computeIfAbsent(piece,
+								p -> ConcurrentHashMap.newKeySet()).add(word);
+				}
+				keys.add(key);
+			}
+		}
+	}
+
+	/**
+	 * @param key The document key of the angel to remove from the index
+	 */
+	public void remove(String key) {
+		put(key, null);
+	}
+
+	/**
+	 * Returns the keys of the angels that may match the criterion. Every angel
+	 * matching the criterion is returned, along with some that may not.
+	 *
+	 * @param criterion The search criterion
+	 * @return The keys of the angels that may match. Null if the index cannot
+	 *         narrow down the angels, as the attribute is not indexed, the
+	 *         criterion is exact or the keyword has no words.
+	 */
+	public Set<String> candidates(SearchCriterion criterion) {
+		Map<String, Set<String>> words = postings.get(criterion.getAttribute());
+		Set<String> parts = tokenize(criterion.getKeyword());
+		if (words == null || criterion.isExact() || parts.isEmpty())
+			return null;
+
+		Set<String> candidates = null;
+		for (String part : parts) {
+			// Angels having a word containing this part of the keyword
+			Set<String> keys = new HashSet<>();
+			for (String word : containing(criterion.getAttribute(), part)) {
+				Set<String> having = words.get(word);
+				if (having != null)
+					keys.addAll(having);
+			}
+
+			if (candidates == null)
+				candidates = keys;
+			else
+				candidates.retainAll(keys);
+			if (candidates.isEmpty())
+				break;
+		}
+		return candidates;
+	}
+
+	/**
+	 * @param attribute An indexed attribute
+	 * @param part      A part of a keyword, in lower case
+	 * @return The words of the attribute containing the part
+	 */
+	private Set<String> containing(Attribute attribute, String part) {
+		Map<String, Set<String>> pieces = grams.get(attribute);
+		if (part.length() <= GRAM_LENGTH)
+			return pieces.getOrDefault(part, Collections.emptySet());
+
+		// Words having every three characters of the part, though not
+		// necessarily in the order of the part
+		Set<String> found = null;
+		for (int i = 0; i + GRAM_LENGTH <= part.length(); ++i) {
+			Set<String> having = pieces.get(part.substring(i, i + GRAM_LENGTH));
+			if (having == null)
+				return Collections.emptySet();
+			if (found == null)
+				found = new HashSet<>(having);
+			else
+				found.retainAll(having);
+		}
+		found.removeIf(word -> !word.contains(part));
+		return found;
+	}
+
+	/**
+	 * Returns every piece of up to three characters of the word, ex: the
+	 * pieces of set are s, e, t, se, et and set.
+	 *
+	 * @param word A word of the index
+	 * @return The pieces of the word
+	 */
+	private static Set<String> pieces(String word) {
+		Set<String> pieces = new HashSet<>();
+		for (int i = 0; i < word.length(); ++i)
+			for (int end = i + 1; end <= Math.min(word.length(),
+					i + GRAM_LENGTH); ++end)
+				pieces.add(word.substring(i, end));
+		return pieces;
+	}
+
+	/**
+	 * @return The number of distinct words within the index
+	 */
+	public int words() {
+		int count = 0;
+		for (Map<String, Set<String>> words : postings.values())
+			count += words.size();
+		return count;
+	}
+
+	/**
+	 * @param angel     The angel, or null
+	 * @param attribute The attribute of the angel
+	 * @return The words of the value of the attribute, in lower case
+	 */
+	private static Set<String> words(Angel angel, Attribute attribute) {
+		Object value = angel == null ? null : angel.get(attribute);
+		if (value == null)
+			return Collections.emptySet();
+		if (!(value instanceof Collection))
+			return tokenize(value.toString());
+
+		// Each value of a list, so words are not joined across values
+		Set<String> words = new HashSet<>();
+		for (Object element : (Collection<?>) value)
+			if (element != null)
+				words.addAll(tokenize(element.toString()));
+		return words;
+	}
+
+	/**
+	 * Splits the text into words of letters and digits, ex: "Lego set (Star
+	 * Wars)" into lego, set, star and wars.
+	 *
+	 * @param text The text to split
+	 * @return The words of the text, in lower case
+	 */
+	static Set<String> tokenize(String text) {
+		Set<String> words = new HashSet<>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); ++i) {
+			boolean part = i < text.length()
+					&& Character.isLetterOrDigit(text.charAt(i));
+			if (part && start < 0)
+				start = i;
+			else if (!part && start >= 0) {
+				words.add(text.substring(start, i).toLowerCase());
+				start = -1;
+			}
+		}
+		return words;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * This class records the latency and result size of calls to the database
+ * for a single query template. Latencies are counted in buckets that grow
+ * exponentially, four buckets per doubling, so any number of calls can be
+ * recorded in a fixed amount of memory. Percentiles are reported as the upper
+ * bound of the bucket they fall in, which is within 19% of the true value.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+public class LatencyHistogram {
+
+	// Four buckets per doubling, from 1 microsecond to over 30 minutes
+	private static final int BUCKETS_PER_DOUBLING = 4;
+	private static final int BUCKETS = 31 * BUCKETS_PER_DOUBLING;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long totalNanos = 0;
+	private long maxNanos = 0;
+	private long totalResults = 0;
+
+	/**
+	 * Records a single call to the database.
+	 * 
+	 * @param nanos       The latency of the call in nanoseconds
+	 * @param resultCount The number of documents returned or written by the
+	 *                    call
+	 */
+	public synchronized void record(long nanos, int resultCount) {
+		counts[bucketOf(nanos)]++;
+		count++;
+		totalNanos += nanos;
+		maxNanos = Math.max(maxNanos, nanos);
+		totalResults += resultCount;
+	}
+
+	/**
+	 * Returns the latency that the given fraction of calls completed within.
+	 * 
+	 * @param fraction The fraction of calls, ex: 0.99 for the 99th percentile
+	 * @return The latency in nanoseconds, or 0 if no calls were recorded
+	 */
+	public synchronized long percentile(double fraction) {
+		if (count == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(upperBound(i), maxNanos);
+		}
+		return maxNanos;
+	}
+
+	/**
+	 * @return The number of calls recorded
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The mean latency in nanoseconds, or 0 if no calls were recorded
+	 */
+	public synchronized long getMean() {
+		return count == 0 ? 0 : totalNanos / count;
+	}
+
+	/**
+	 * @return The longest latency recorded in nanoseconds
+	 */
+	public synchronized long getMax() {
+		return maxNanos;
+	}
+
+	/**
+	 * @return The mean number of documents per call
+	 */
+	public synchronized double getMeanResults() {
+		return count == 0 ? 0 : totalResults / (double) count;
+	}
+
+	/**
+	 * Returns the bucket the latency falls in.
+	 * 
+	 * @param nanos The latency in nanoseconds
+	 * @return The index of the bucket
+	 */
+	private static int bucketOf(long nanos) {
+		double micros = Math.max(nanos / 1000.0, 1);
+		int bucket = (int) Math.ceil(
+				Math.log(micros) / Math.log(2) * BUCKETS_PER_DOUBLING);
+		return Math.min(bucket, BUCKETS - 1);
+	}
+
+	/**
+	 * Returns the largest latency that falls within the bucket.
+	 * 
+	 * @param bucket The index of the bucket
+	 * @return The latency in nanoseconds
+	 */
+	private static long upperBound(int bucket) {
+		return (long) (Math.pow(2, bucket / (double) BUCKETS_PER_DOUBLING)
+				* 1000);
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * This class records how long each call to the database takes. Calls are
+ * grouped by the name of their query template, or by operation for calls that
+ * are not queries, such as INSERT or DELETE. Each group has its own
+ * LatencyHistogram.
+ * 
+ * Any call that takes longer than the slow query threshold is appended to the
+ * slow query log file along with its AQL and duration. Other notes on the
+ * queries, such as the report of every histogram, are written to the same
+ * file rather than to the console.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class QueryMetrics {
+
+	private final long slowThresholdNanos;
+	private final Path slowQueryLog;
+	private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * @param slowThresholdMillis Calls taking at least this many milliseconds
+	 *                            are written to the slow query log
+	 * @param slowQueryLog        The file slow calls are appended to
+	 */
+	public QueryMetrics(long slowThresholdMillis, Path slowQueryLog) {
+		this.slowThresholdNanos = slowThresholdMillis * 1000 * 1000;
+		this.slowQueryLog = slowQueryLog;
+	}
+
+	/**
+	 * Records a single call to the database.
+	 * 
+	 * @param name        The query template or operation of the call
+	 * @param aql         The AQL sent, or a description of the operation
+	 * @param nanos       The latency of the call in nanoseconds
+	 * @param resultCount The number of documents returned or written
+	 */
+	public void record(String name, String aql, long nanos, int resultCount) {
+		histograms.computeIfAbsent(name, n -> new LatencyHistogram())
+				.record(nanos, resultCount);
+
+		if (nanos >= slowThresholdNanos)
+			logSlowQuery(name, aql, nanos, resultCount);
+	}
+
+	/**
+	 * @param name The query template or operation
+	 * @return The histogram of the calls with the name, or null if there have
+	 *         been no calls.
+	 */
+	public LatencyHistogram getHistogram(String name) {
+		return histograms.get(name);
+	}
+
+	/**
+	 * Appends the slow call to the slow query log.
+	 * 
+	 * @param name        The query template or operation of the call
+	 * @param aql         The AQL sent, or a description of the operation
+	 * @param nanos       The latency of the call in nanoseconds
+	 * @param resultCount The number of documents returned or written
+	 */
+	private void logSlowQuery(String name, String aql, long nanos,
+			int resultCount) {
+		log(String.format("%s %.1f ms, %d results: %s", name, nanos / 1e6,
+				resultCount, aql.replaceAll("\\s+", " ")));
+	}
+
+	/**
+	 * Appends the text to the slow query log, after the current time.
+	 * 
+	 * @param text The text to log, ex: the report of every histogram
+	 */
+	public synchronized void log(String text) {
+		try (BufferedWriter writer = Files.newBufferedWriter(slowQueryLog,
+				StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND)) {
+			writer.write(String.format("%s %s%n", LocalDateTime.now(), text));
+		} catch (IOException e) {
+			System.err.println("Unable to write slow query log: "
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * @return Table of the count, latency percentiles and mean result size
+	 *         of each query template and operation, sorted by name.
+	 */
+	public String report() {
+		StringBuilder report = new StringBuilder(String.format(
+				"%-28s %8s %10s %10s %10s %10s %9s%n", "Query", "Count",
+				"p50 ms", "p95 ms", "p99 ms", "max ms", "Results"));
+
+		for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(
+				histograms).entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			report.append(String.format(
+					"%-28s %8d %10.2f %10.2f %10.2f %10.2f %9.1f%n",
+					entry.getKey(), histogram.getCount(),
+					histogram.percentile(0.50) / 1e6,
+					histogram.percentile(0.95) / 1e6,
+					histogram.percentile(0.99) / 1e6,
+					histogram.getMax() / 1e6, histogram.getMeanResults()));
+		}
+		return report.toString();
+	}
+}
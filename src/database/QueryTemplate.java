@@ -0,0 +1,312 @@
+/**
+ * This class is the registry of all the AQL queries used within the
+ * application. Each query is declared once as a template with bind variables,
+ * such as @id, rather than by concatenating values into the query. Sending the
+ * same query string with different bind variables allows ArangoDB to reuse the
+ * query plan instead of parsing a new query on every call.
+ * 
+ * The collection being queried is provided through the @@collection bind
+ * variable.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public enum QueryTemplate {
+
+	// Angels with an ID of the number followed by a single character, ex:
+	// 12A and 12B for the number 12, sorted by ID
+	ANGELS_BY_ID_NUMBER("FOR doc IN @@collection "
+			+ "FILTER doc.ID_NUMBER == @number "
+			+ "FILTER LENGTH(doc.ID_SUFFIX) == 1 "
+			+ "SORT doc.ID_NUMBER, doc.ID_SUFFIX "
+			+ "RETURN doc",
+			"number", 12),
+
+	// The angel with the exact ID
+	ANGEL_BY_ID("FOR doc IN @@collection "
+			+ "FILTER doc.ID == @id "
+			+ "LIMIT 1 "
+			+ "RETURN doc",
+			"id", "12A"),
+
+	// Every angel ordered by ID, ex: 9A before 10A
+	ALL_ANGELS_BY_ID("FOR doc IN @@collection "
+			+ "SORT doc.ID_NUMBER, doc.ID_SUFFIX "
+			+ "RETURN doc"),
+
+	// A limited number of angels with the given status
+	ANGELS_BY_STATUS("FOR doc IN @@collection "
+			+ "FILTER doc.STATUS == @status "
+			+ "LIMIT @limit "
+			+ "RETURN doc",
+			"status", "NOT_STARTED", "limit", 10),
+
+	// Angels matching every search criteria, where each criteria is an object
+	// {attribute, keyword, exact}, sorted by ID. Exact criteria must match
+	// the keyword followed by one character, all others must contain the
+	// keyword. Lists, such as the wishes, match if any value of the list
+	// does, the same as SearchCriterion.matches().
+	SEARCH_ANGELS("FOR doc IN @@collection "
+			+ "FILTER LENGTH("
+			+ "FOR c IN @criteria "
+			+ "LET value = doc[c.attribute] "
+			+ "FILTER LENGTH((IS_ARRAY(value) ? value : [value])[* FILTER "
+			+ "c.exact "
+			+ "? LIKE(LOWER(CURRENT), LOWER(CONCAT(c.keyword, '_'))) "
+			+ ": CONTAINS(LOWER(CURRENT), LOWER(c.keyword))]) > 0 "
+			+ "RETURN 1) == LENGTH(@criteria) "
+			+ "SORT doc.ID_NUMBER, doc.ID_SUFFIX "
+			+ "RETURN doc",
+			"criteria", Collections.emptyList()),
+
+	// A page of the angels matching every search criteria, as SEARCH_ANGELS,
+	// in order by ID starting after the ID @afterID, whose number and suffix
+	// are @afterNumber and @afterSuffix. The next page starts after the last
+	// angel of the page, so the ID index is read from that point rather than
+	// skipping the angels of earlier pages. IDs with the same number and
+	// suffix, ex: 012A and 12A, are ordered by the whole ID so neither is
+	// skipped.
+	SEARCH_ANGELS_PAGE("FOR doc IN @@collection "
+			+ "FILTER doc.ID_NUMBER >= @afterNumber "
+			+ "FILTER doc.ID_NUMBER > @afterNumber "
+			+ "OR doc.ID_SUFFIX > @afterSuffix "
+			+ "OR doc.ID_SUFFIX == @afterSuffix AND doc.ID > @afterID "
+			+ "FILTER LENGTH("
+			+ "FOR c IN @criteria "
+			+ "LET value = doc[c.attribute] "
+			+ "FILTER LENGTH((IS_ARRAY(value) ? value : [value])[* FILTER "
+			+ "c.exact "
+			+ "? LIKE(LOWER(CURRENT), LOWER(CONCAT(c.keyword, '_'))) "
+			+ ": CONTAINS(LOWER(CURRENT), LOWER(c.keyword))]) > 0 "
+			+ "RETURN 1) == LENGTH(@criteria) "
+			+ "SORT doc.ID_NUMBER, doc.ID_SUFFIX, doc.ID "
+			+ "LIMIT @limit "
+			+ "RETURN doc",
+			"criteria", Collections.emptyList(), "afterNumber", 12,
+			"afterSuffix", "A", "afterID", "12A", "limit", 50),
+
+	// Number of angels matching every search criteria, as SEARCH_ANGELS,
+	// with each combination of status, gender, age band and location, counted
+	// as the matching angels are read rather than after collecting them.
+	// Values are read the same as Angel does, so statuses not within
+	// @statuses, genders not within @genders and ages that are not numbers
+	// are counted as missing. Ages are banded every @ageBand years, ex: 3-5.
+	// See FacetCounts.
+	FACET_COUNTS("FOR doc IN @@collection "
+			+ "FILTER LENGTH("
+			+ "FOR c IN @criteria "
+			+ "LET value = doc[c.attribute] "
+			+ "FILTER LENGTH((IS_ARRAY(value) ? value : [value])[* FILTER "
+			+ "c.exact "
+			+ "? LIKE(LOWER(CURRENT), LOWER(CONCAT(c.keyword, '_'))) "
+			+ ": CONTAINS(LOWER(CURRENT), LOWER(c.keyword))]) > 0 "
+			+ "RETURN 1) == LENGTH(@criteria) "
+			+ "LET gender = IS_STRING(doc.GENDER) ? LOWER(doc.GENDER) : null "
+			+ "LET age = IS_NUMBER(doc.AGE) ? doc.AGE "
+			+ ": REGEX_TEST(doc.AGE, '^ *[0-9]+ *$') "
+			+ "? TO_NUMBER(TRIM(doc.AGE)) : null "
+			+ "LET band = FLOOR(age / @ageBand) * @ageBand "
+			+ "COLLECT "
+			+ "STATUS = doc.STATUS IN @statuses ? doc.STATUS : null, "
+			+ "GENDER = gender IN @genders ? gender : null, "
+			+ "AGE = age == null || age < 0 ? null "
+			+ ": CONCAT(band, '-', band + @ageBand - 1), "
+			+ "LOCATION = doc.LOCATION "
+			+ "WITH COUNT INTO count "
+			+ "RETURN { STATUS, GENDER, AGE, LOCATION, count }",
+			"criteria", Collections.emptyList(), "ageBand", 3,
+			"statuses", Arrays.asList("HOLD"),
+			"genders", Arrays.asList("boy", "girl")),
+
+	// Adds each of @documents stamped with the time of the database, as every
+	// other write is, and returns the added documents. Documents whose key
+	// already exists, or that are otherwise rejected, are skipped.
+	INSERT_ANGELS("FOR doc IN @documents "
+			+ "INSERT MERGE(doc, { UPDATE_STAMP: DATE_NOW() }) "
+			+ "INTO @@collection "
+			+ "OPTIONS { ignoreErrors: true } "
+			+ "RETURN NEW",
+			"documents", Collections.emptyList()),
+
+	// Keys within @keys of the documents that exist
+	EXISTING_KEYS("FOR doc IN @@collection "
+			+ "FILTER doc._key IN @keys "
+			+ "RETURN doc._key",
+			"keys", Collections.singletonList("12A")),
+
+	// Removes the angel with the key, recording the time it was removed
+	// within @@deleted so other stations remove it from their snapshot. An
+	// angel removed more than once keeps only the latest time.
+	DELETE_ANGEL("REMOVE @key IN @@collection "
+			+ "UPSERT { _key: @key } "
+			+ "INSERT { _key: @key, UPDATE_STAMP: DATE_NOW() } "
+			+ "UPDATE { UPDATE_STAMP: DATE_NOW() } "
+			+ "IN @@deleted",
+			"key", "12A", "@deleted", DBCollection.DELETED_ANGELS),
+
+	// Angels written at or after the update stamp, oldest change first
+	ANGELS_CHANGED_SINCE("FOR doc IN @@collection "
+			+ "FILTER doc.UPDATE_STAMP >= @since "
+			+ "SORT doc.UPDATE_STAMP "
+			+ "RETURN doc",
+			"since", 0),
+
+	// Keys of the angels removed at or after the update stamp, along with
+	// the time each was removed. Run on the DELETED_ANGELS collection.
+	ANGELS_DELETED_SINCE("FOR doc IN @@collection "
+			+ "FILTER doc.UPDATE_STAMP >= @since "
+			+ "RETURN doc",
+			"since", 0),
+
+	// Sets all the attributes within @changes on every document in @keys and
+	// returns the new documents. Keys that do not exist are skipped. Used for
+	// every update, including those of a single document, so that journaled
+	// writes are replayed with the same query. The update stamp is the time of
+	// the database, so a replayed write is stamped when it is replayed.
+	UPDATE_ATTRIBUTES_BULK("FOR k IN @keys "
+			+ "UPDATE k "
+			+ "WITH MERGE(@changes, { UPDATE_STAMP: DATE_NOW() }) "
+			+ "IN @@collection "
+			+ "OPTIONS { ignoreErrors: true } "
+			+ "RETURN NEW",
+			"keys", Collections.singletonList("12A"),
+			"changes", Collections.emptyMap()),
+
+	// Sets the attributes within @changes on the document only if it still
+	// has the revision @rev, ex: the revision shown to the user. Returns
+	// whether the document was updated along with the new document, or the
+	// current document if another write changed it first. A write changing
+	// the document between the read and the update fails the query with a
+	// write conflict, as the revision is checked again by ignoreRevs. Must
+	// be sent only once, see Database.queryIfUnchanged().
+	UPDATE_IF_REVISION("LET current = FIRST("
+			+ "FOR doc IN @@collection "
+			+ "FILTER doc._key == @key "
+			+ "RETURN doc) "
+			+ "LET updated = ("
+			+ "FOR doc IN (current != null && current._rev == @rev "
+			+ "? [current] : []) "
+			+ "UPDATE doc "
+			+ "WITH MERGE(@changes, { UPDATE_STAMP: DATE_NOW() }) "
+			+ "IN @@collection "
+			+ "OPTIONS { ignoreRevs: false } "
+			+ "RETURN NEW) "
+			+ "RETURN { updated: LENGTH(updated) == 1, "
+			+ "document: FIRST(updated) || current }",
+			"key", "12A", "rev", "_abc",
+			"changes", Collections.emptyMap()),
+
+	// Adds the ID number and suffix to angels added before they were stored,
+	// ex: ID_NUMBER 123 and ID_SUFFIX 'B' for the ID 123B
+	ADD_MISSING_ID_PARTS("FOR doc IN @@collection "
+			+ "FILTER doc.ID_NUMBER == null "
+			+ "UPDATE doc WITH { "
+			+ "ID_NUMBER: TO_NUMBER(REGEX_REPLACE(doc.ID, '[^0-9].*$', '')), "
+			+ "ID_SUFFIX: REGEX_REPLACE(doc.ID, '^[0-9]*', ''), "
+			+ "UPDATE_STAMP: DATE_NOW() "
+			+ "} IN @@collection"),
+
+	// Lower cases the genders of angels added before genders were stored in
+	// lower case, ex: boy rather than BOY, so they match the filters of the
+	// export and are counted together
+	LOWER_CASE_GENDERS("FOR doc IN @@collection "
+			+ "FILTER IS_STRING(doc.GENDER) "
+			+ "FILTER doc.GENDER != LOWER(doc.GENDER) "
+			+ "UPDATE doc WITH { "
+			+ "GENDER: LOWER(doc.GENDER), "
+			+ "UPDATE_STAMP: DATE_NOW() "
+			+ "} IN @@collection"),
+
+	// Stamps angels added before every write set the update stamp, so they
+	// are included by the first delta sync of each station
+	ADD_MISSING_UPDATE_STAMPS("FOR doc IN @@collection "
+			+ "FILTER doc.UPDATE_STAMP == null "
+			+ "UPDATE doc WITH { UPDATE_STAMP: DATE_NOW() } IN @@collection");
+
+	// Name of each template by its AQL, used to name the timing of a query
+	private static final Map<String, String> NAMES = new HashMap<>();
+	static {
+		for (QueryTemplate template : values())
+			NAMES.put(template.aql, template.name());
+	}
+
+	private final String aql;
+	private final Object[] exampleBindVars;
+
+	/**
+	 * @param aql             The query containing bind variables
+	 * @param exampleBindVars Alternating names and example values of the bind
+	 *                        variables, other than @@collection. Used to
+	 *                        explain the query without running it.
+	 */
+	private QueryTemplate(String aql, Object... exampleBindVars) {
+		this.aql = aql;
+		this.exampleBindVars = exampleBindVars;
+	}
+
+	/**
+	 * Returns example bind variables for the query. These allow the query plan
+	 * to be explained, such as checking the query uses an index, without the
+	 * query being run.
+	 * 
+	 * @param collection The collection the query is run on
+	 * @return Map of bind variable names to example values
+	 */
+	public Map<String, Object> exampleBindVars(DBCollection collection) {
+		Map<String, Object> bindVars = bindVars(exampleBindVars);
+		bindVars.put("@collection", collection.toString());
+		return bindVars;
+	}
+
+	/**
+	 * Returns the name of the registered template with the AQL.
+	 * 
+	 * @param aql The AQL of a query
+	 * @return The name of the template, ex: ANGEL_BY_ID, or AD_HOC if the
+	 *         query is not a registered template.
+	 */
+	public static String nameOf(String aql) {
+		return NAMES.getOrDefault(aql, "AD_HOC");
+	}
+
+	/**
+	 * Creates the bind variables for a query from the names and values
+	 * provided. The names and values alternate, ex: bindVars("id", "1A").
+	 * 
+	 * The name of a collection bind variable must include the extra @, ex:
+	 * bindVars("@collection", DBCollection.ANGELS).
+	 * 
+	 * @param namesAndValues Alternating bind variable names and values
+	 * @return Map of bind variable names to their values
+	 */
+	public static Map<String, Object> bindVars(Object... namesAndValues) {
+		if (namesAndValues.length % 2 != 0)
+			throw new IllegalArgumentException(
+					"Each bind variable name requires a value");
+
+		Map<String, Object> bindVars = new HashMap<>();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			Object value = namesAndValues[i + 1];
+
+			// Enums, such as a Status or DBCollection, are stored as strings
+			if (value instanceof Enum)
+				value = value.toString();
+			bindVars.put(namesAndValues[i].toString(), value);
+		}
+		return bindVars;
+	}
+
+	/**
+	 * @return The AQL of the query template
+	 */
+	public String toString() {
+		return aql;
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * This class describes how the Database handles failed requests. It holds the
+ * deadline of each operation, how failed requests that are safe to repeat are
+ * retried, and when the CircuitBreaker stops sending requests to a server that
+ * is not responding.
+ * 
+ * A failed request is retried after a delay that doubles with each attempt,
+ * starting at the initial backoff and never exceeding the max backoff. No
+ * retry is started if it would finish past the deadline of the operation.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+public class ResiliencePolicy {
+
+	// Policy used when none is provided
+	public static final ResiliencePolicy DEFAULT = new ResiliencePolicy(
+			15 * 1000, 	// 15 second deadline per operation
+			3, 			// Retries of a failed request
+			100, 		// 100 ms before the first retry
+			2 * 1000, 	// 2 seconds at most between retries
+			5, 			// Failed requests in a row that open the circuit
+			10 * 1000); // 10 seconds before testing the server again
+
+	private final long operationDeadline;
+	private final int maxRetries;
+	private final long initialBackoff;
+	private final long maxBackoff;
+	private final int failureThreshold;
+	private final long openDuration;
+
+	/**
+	 * @param operationDeadline Milliseconds an operation, including all of its
+	 *                          retries, may take
+	 * @param maxRetries        The maximum number of times a failed request
+	 *                          is retried
+	 * @param initialBackoff    Milliseconds to wait before the first retry
+	 * @param maxBackoff        The maximum milliseconds to wait between
+	 *                          retries
+	 * @param failureThreshold  The number of failed requests in a row that
+	 *                          opens the circuit
+	 * @param openDuration      Milliseconds the circuit stays open before a
+	 *                          single request is sent to test the server
+	 */
+	public ResiliencePolicy(long operationDeadline, int maxRetries,
+			long initialBackoff, long maxBackoff, int failureThreshold,
+			long openDuration) {
+		if (operationDeadline <= 0 || maxRetries < 0 || initialBackoff < 0
+				|| maxBackoff < initialBackoff || failureThreshold <= 0
+				|| openDuration < 0)
+			throw new IllegalArgumentException("Invalid resilience policy");
+
+		this.operationDeadline = operationDeadline;
+		this.maxRetries = maxRetries;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration;
+	}
+
+	/**
+	 * @return Milliseconds an operation, including all of its retries, may take
+	 */
+	public long getOperationDeadline() {
+		return operationDeadline;
+	}
+
+	/**
+	 * @return The maximum number of times a failed request is retried
+	 */
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * @return Milliseconds to wait before the first retry
+	 */
+	public long getInitialBackoff() {
+		return initialBackoff;
+	}
+
+	/**
+	 * @return The maximum milliseconds to wait between retries
+	 */
+	public long getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	/**
+	 * @return The number of failed requests in a row that opens the circuit
+	 */
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	/**
+	 * @return Milliseconds the circuit stays open before the server is tested
+	 */
+	public long getOpenDuration() {
+		return openDuration;
+	}
+
+	@Override
+	public String toString() {
+		return "ResiliencePolicy[deadline=" + operationDeadline + "ms, retries="
+				+ maxRetries + ", backoff=" + initialBackoff + "-" + maxBackoff
+				+ "ms, threshold=" + failureThreshold + ", open="
+				+ openDuration + "ms]";
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * This class represents a single criterion of a keyword search. An angel
+ * matches the criterion if the value of the attribute contains the keyword,
+ * ignoring case. An exact criterion instead requires the value to be the
+ * keyword followed by a single character, ex: the keyword 12 exactly matches
+ * the IDs 12A and 12B but not 112A or 12AA. A list, such as the wishes,
+ * matches if any value of the list matches.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import angels.Angel;
+import angels.Attribute;
+
+public class SearchCriterion {
+
+	private final Attribute attribute;
+	private final String keyword;
+	private final boolean exact;
+
+	/**
+	 * @param attribute The attribute of the angel to search
+	 * @param keyword   The keyword to search for
+	 * @param exact     True if the value must be the keyword followed by a
+	 *                  single character
+	 */
+	public SearchCriterion(Attribute attribute, String keyword, boolean exact) {
+		this.attribute = attribute;
+		this.keyword = keyword;
+		this.exact = exact;
+	}
+
+	/**
+	 * Returns whether the angel matches the criterion.
+	 * 
+	 * @param angel The angel to check
+	 * @return True if the angel matches; otherwise false is returned.
+	 */
+	public boolean matches(Angel angel) {
+		Object value = angel.get(attribute);
+		if (value == null)
+			return false;
+		if (!(value instanceof Collection))
+			return matchesValue(value);
+
+		for (Object element : (Collection<?>) value)
+			if (element != null && matchesValue(element))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param value A single value of the attribute
+	 * @return True if the value matches the keyword
+	 */
+	private boolean matchesValue(Object value) {
+		String text = value.toString().toLowerCase();
+		String word = keyword.toLowerCase();
+		if (exact)
+			return text.length() == word.length() + 1 && text.startsWith(word);
+		return text.contains(word);
+	}
+
+	/**
+	 * @return The criterion as the object used by the SEARCH_ANGELS query,
+	 *         {attribute, keyword, exact}
+	 */
+	Map<String, Object> toBindVar() {
+		Map<String, Object> criterion = new HashMap<>();
+		criterion.put("attribute", attribute.toString());
+		criterion.put("keyword", keyword);
+		criterion.put("exact", exact);
+		return criterion;
+	}
+
+	public Attribute getAttribute() {
+		return attribute;
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+
+	public boolean isExact() {
+		return exact;
+	}
+}
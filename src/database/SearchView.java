@@ -0,0 +1,222 @@
+/**
+ * This class describes the ArangoSearch view used for keyword searches, and
+ * compiles search criteria into queries against it. A CONTAINS filter cannot
+ * use an index, so each keyword search would read every angel. Instead, the
+ * free text attributes are split into lower case n-grams, every three
+ * characters, by the analyzer of the view. A keyword is then found by the
+ * n-grams it is made of, ex: lego by leg and ego.
+ *
+ * Criteria the view cannot answer, such as an exact ID or a keyword shorter
+ * than an n-gram, are filtered the same as QueryTemplate.SEARCH_ANGELS. Every
+ * angel found by the view is also filtered, so the angels returned are the
+ * same as those of SEARCH_ANGELS. Searches are ordered by relevance, while
+ * pages are ordered by ID, the same as QueryTemplate.SEARCH_ANGELS_PAGE.
+ *
+ * The analyzer requires ArangoDB 3.8 or newer.
+ *
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import angels.Angel;
+import angels.Attribute;
+
+public class SearchView {
+
+	// Names of the view and of its analyzer within the database
+	public static final String NAME = "angels_search";
+	public static final String ANALYZER = "angels_ngram";
+
+	// Characters within each n-gram, also the shortest keyword searched
+	public static final int NGRAM_LENGTH = 3;
+
+	// Names the latency of the view queries are recorded under
+	public static final String QUERY_NAME = "SEARCH_VIEW";
+	public static final String PAGE_QUERY_NAME = "SEARCH_VIEW_PAGE";
+
+	// Attributes indexed by the view
+	private static final List<Attribute> FIELDS = Arrays.asList(
+			Attribute.WISH, Attribute.BOOK, Attribute.SPECIAL,
+			Attribute.LOCATION, Attribute.ID);
+
+	/**
+	 * @return The definition of the analyzer, lower casing the text and then
+	 *         splitting it into n-grams
+	 */
+	public static Map<String, Object> analyzerDefinition() {
+		Map<String, Object> lower = new HashMap<>();
+		lower.put("type", "norm");
+		lower.put("properties", object(
+				"locale", "en.utf-8",
+				"case", "lower",
+				"accent", true));
+
+		Map<String, Object> ngram = new HashMap<>();
+		ngram.put("type", "ngram");
+		ngram.put("properties", object(
+				"min", NGRAM_LENGTH,
+				"max", NGRAM_LENGTH,
+				"preserveOriginal", false,
+				"streamType", "utf8"));
+
+		Map<String, Object> analyzer = new HashMap<>();
+		analyzer.put("name", ANALYZER);
+		analyzer.put("type", "pipeline");
+		analyzer.put("properties",
+				object("pipeline", Arrays.asList(lower, ngram)));
+		analyzer.put("features",
+				Arrays.asList("frequency", "norm", "position"));
+		return analyzer;
+	}
+
+	/**
+	 * @param collection The collection searched by the view
+	 * @return The links of the view, indexing each of the searched attributes
+	 *         of the collection with the analyzer
+	 */
+	public static Map<String, Object> links(DBCollection collection) {
+		Map<String, Object> fields = new HashMap<>();
+		for (Attribute attribute : FIELDS)
+			fields.put(attribute.toString(), object(
+					"analyzers", Arrays.asList(ANALYZER)));
+
+		Map<String, Object> link = new HashMap<>();
+		link.put("includeAllFields", false);
+		link.put("fields", fields);
+
+		Map<String, Object> links = new HashMap<>();
+		links.put(collection.toString(), link);
+		return links;
+	}
+
+	/**
+	 * @param keysAndValues Alternating keys and values, ex: "type", "norm"
+	 * @return The JSON object of the keys and values
+	 */
+	private static Map<String, Object> object(Object... keysAndValues) {
+		Map<String, Object> object = new HashMap<>();
+		for (int i = 0; i < keysAndValues.length; i += 2)
+			object.put(keysAndValues[i].toString(), keysAndValues[i + 1]);
+		return object;
+	}
+
+	/**
+	 * @param criterion A search criterion
+	 * @return True if the view can find the angels matching the criterion
+	 */
+	public static boolean canSearch(SearchCriterion criterion) {
+		return FIELDS.contains(criterion.getAttribute())
+				&& !criterion.isExact()
+				&& criterion.getKeyword().length() >= NGRAM_LENGTH;
+	}
+
+	/**
+	 * Compiles the criteria into a query against the view, ordered by
+	 * relevance and then by ID.
+	 *
+	 * @param criteria The criteria each angel must match
+	 * @param bindVars Filled with the values for the bind variables of the
+	 *                 query
+	 * @return The query. Null if the view cannot answer any of the criteria.
+	 */
+	public static String compile(List<SearchCriterion> criteria,
+			Map<String, Object> bindVars) {
+		String search = compileSearch(criteria, bindVars);
+		if (search == null)
+			return null;
+
+		return search
+				+ "SORT BM25(doc) DESC, doc.ID_NUMBER, doc.ID_SUFFIX "
+				+ "RETURN doc";
+	}
+
+	/**
+	 * Compiles the criteria into a query against the view for a page of the
+	 * angels found, in order by ID starting after the ID, the same as
+	 * QueryTemplate.SEARCH_ANGELS_PAGE. Only the angels found by the view are
+	 * sorted, rather than every angel within the collection.
+	 *
+	 * @param criteria The criteria each angel must match
+	 * @param afterID  The ID the page starts after. Null for the first page.
+	 * @param limit    The maximum number of angels within the page
+	 * @param bindVars Filled with the values for the bind variables of the
+	 *                 query
+	 * @return The query. Null if the view cannot answer any of the criteria.
+	 */
+	public static String compilePage(List<SearchCriterion> criteria,
+			String afterID, int limit, Map<String, Object> bindVars) {
+		String search = compileSearch(criteria, bindVars);
+		if (search == null)
+			return null;
+
+		// The first page starts after every ID, as no number is negative
+		bindVars.put("afterNumber",
+				afterID == null ? -1 : Angel.parseIDNumber(afterID));
+		bindVars.put("afterSuffix",
+				afterID == null ? "" : Angel.parseIDSuffix(afterID));
+		bindVars.put("afterID", afterID == null ? "" : afterID);
+		bindVars.put("limit", limit);
+		return search
+				+ "FILTER doc.ID_NUMBER >= @afterNumber "
+				+ "FILTER doc.ID_NUMBER > @afterNumber "
+				+ "OR doc.ID_SUFFIX > @afterSuffix "
+				+ "OR doc.ID_SUFFIX == @afterSuffix AND doc.ID > @afterID "
+				+ "SORT doc.ID_NUMBER, doc.ID_SUFFIX, doc.ID "
+				+ "LIMIT @limit "
+				+ "RETURN doc";
+	}
+
+	/**
+	 * Compiles the SEARCH and FILTER operations of the criteria. Each
+	 * criterion the view can answer is searched as a PHRASE of its n-grams,
+	 * and every criterion is filtered afterwards.
+	 *
+	 * @param criteria The criteria each angel must match
+	 * @param bindVars Filled with the values for the bind variables
+	 * @return The start of the query, without a SORT or RETURN. Null if the
+	 *         view cannot answer any of the criteria.
+	 */
+	private static String compileSearch(List<SearchCriterion> criteria,
+			Map<String, Object> bindVars) {
+		List<String> phrases = new ArrayList<>();
+		StringBuilder filters = new StringBuilder();
+
+		for (int i = 0; i < criteria.size(); ++i) {
+			SearchCriterion criterion = criteria.get(i);
+			bindVars.put("attribute" + i, criterion.getAttribute().toString());
+			bindVars.put("keyword" + i, criterion.getKeyword());
+
+			if (canSearch(criterion))
+				phrases.add("PHRASE(doc.@attribute" + i + ", @keyword" + i
+						+ ")");
+
+			// Lists match if any value of the list does, as SEARCH_ANGELS
+			filters.append("LET value" + i + " = doc.@attribute" + i + " ")
+					.append("FILTER LENGTH((IS_ARRAY(value" + i + ") ? value"
+							+ i + " : [value" + i + "])[* FILTER ");
+			if (criterion.isExact())
+				filters.append("LIKE(LOWER(CURRENT), LOWER(CONCAT(@keyword" + i
+						+ ", '_')))");
+			else
+				filters.append("CONTAINS(LOWER(CURRENT), LOWER(@keyword" + i
+						+ "))");
+			filters.append("]) > 0 ");
+		}
+
+		if (phrases.isEmpty())
+			return null;
+
+		bindVars.put("analyzer", ANALYZER);
+		return "FOR doc IN " + NAME + " "
+				+ "SEARCH ANALYZER(" + String.join(" AND ", phrases)
+				+ ", @analyzer) "
+				+ filters;
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * This class represents the result of updating an angel only if it has not
+ * been changed since it was read. When another station changed the angel
+ * first, the result holds the current angel, so the changes can be merged or
+ * retried without reading the angel again.
+ *
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import angels.Angel;
+
+public class UpdateResult {
+
+	public enum Outcome {
+		UPDATED, 	// Changes were applied
+		CONFLICT, 	// Angel was changed since it was read, nothing applied
+		NOT_FOUND, 	// Angel does not exist
+		ERROR; 		// Angel could not be updated for any other reason
+	}
+
+	private final Outcome outcome;
+	private final Angel angel;
+
+	/**
+	 * @param outcome The outcome of the update
+	 * @param angel   The updated angel, the current angel on a conflict,
+	 *                otherwise null
+	 */
+	private UpdateResult(Outcome outcome, Angel angel) {
+		this.outcome = outcome;
+		this.angel = angel;
+	}
+
+	/**
+	 * @param angel The angel with the changes applied
+	 * @return The result of an applied update
+	 */
+	public static UpdateResult updated(Angel angel) {
+		return new UpdateResult(Outcome.UPDATED, angel);
+	}
+
+	/**
+	 * @param current The angel as it currently is, including its revision
+	 * @return The result of an update rejected as the angel had changed
+	 */
+	public static UpdateResult conflict(Angel current) {
+		return new UpdateResult(Outcome.CONFLICT, current);
+	}
+
+	/**
+	 * @return The result of updating an angel that does not exist
+	 */
+	public static UpdateResult notFound() {
+		return new UpdateResult(Outcome.NOT_FOUND, null);
+	}
+
+	/**
+	 * @return The result of an update that could not be made
+	 */
+	public static UpdateResult error() {
+		return new UpdateResult(Outcome.ERROR, null);
+	}
+
+	/**
+	 * @return The outcome of the update
+	 */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * @return The updated angel when UPDATED, the current angel when
+	 *         CONFLICT, otherwise null.
+	 */
+	public Angel getAngel() {
+		return angel;
+	}
+
+	/**
+	 * @return True if the changes were applied
+	 */
+	public boolean isUpdated() {
+		return outcome == Outcome.UPDATED;
+	}
+
+	@Override
+	public String toString() {
+		return outcome + (angel == null ? "" : " " + angel.getKey());
+	}
+}
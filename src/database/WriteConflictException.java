@@ -0,0 +1,22 @@
+/**
+ * This exception is thrown when a query is rejected because another write
+ * changed a document the query was changing, while the query was running.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import com.arangodb.ArangoDBException;
+
+public class WriteConflictException extends ArangoDBException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param cause The error returned by the database
+	 */
+	public WriteConflictException(ArangoDBException cause) {
+		super(cause);
+	}
+}
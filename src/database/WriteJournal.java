@@ -0,0 +1,461 @@
+/**
+ * This class is an append-only journal, stored on disk, of the writes that
+ * could not be sent to the database. Each write sets attributes to fixed
+ * values on one or more documents, so replaying a write more than once has
+ * the same effect as replaying it once. A write holding a revision is only
+ * applied while the document still has it, see Entry.
+ * 
+ * Appending a write only copies it to the file. The file is then forced to
+ * disk by sync(). When several writes are appended at once, a single sync()
+ * forces all of them, so writes are not slowed by one disk flush each.
+ * 
+ * Writes remain in the journal, in the order they were appended, until they
+ * are removed once they have been replayed. The journal is read back from the
+ * file when the application starts, so pending writes survive a restart.
+ * Writes the database keeps rejecting are moved to a separate rejected file,
+ * beside the journal, rather than being discarded, so they can be looked at
+ * and entered again by hand.
+ * 
+ * @author Nicholas Kunzler
+ */
+
+package database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+public class WriteJournal {
+
+	/**
+	 * A single write, setting the changed attributes on each of the keys. A
+	 * write of a single document may also hold the revision the document
+	 * must still have, so it is only replayed if no other station changed
+	 * the document first.
+	 */
+	public static final class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String collection;
+		private final List<String> keys;
+		private final Map<String, Object> changes;
+
+		// Null for writes applied whatever the revision, including writes
+		// journaled before revisions were kept
+		private final String revision;
+
+		/**
+		 * @param collection The collection containing the documents
+		 * @param keys       The keys of the documents being updated
+		 * @param changes    Map of each attribute name to its new value. The
+		 *                   values must be serializable, such as strings,
+		 *                   numbers or lists.
+		 */
+		public Entry(String collection, List<String> keys,
+				Map<String, Object> changes) {
+			this(collection, keys, changes, null);
+		}
+
+		/**
+		 * @param collection The collection containing the documents
+		 * @param keys       The keys of the documents being updated
+		 * @param changes    Map of each attribute name to its new value. The
+		 *                   values must be serializable, such as strings,
+		 *                   numbers or lists.
+		 * @param revision   The revision the single document must have for
+		 *                   the write to be applied. Null to always apply it.
+		 */
+		public Entry(String collection, List<String> keys,
+				Map<String, Object> changes, String revision) {
+			this.collection = collection;
+			this.keys = Collections.unmodifiableList(new ArrayList<>(keys));
+			this.changes = Collections.unmodifiableMap(new HashMap<>(changes));
+			this.revision = revision;
+		}
+
+		public String getCollection() {
+			return collection;
+		}
+
+		public List<String> getKeys() {
+			return keys;
+		}
+
+		public Map<String, Object> getChanges() {
+			return changes;
+		}
+
+		public String getRevision() {
+			return revision;
+		}
+	}
+
+	private final Path file;
+	private final Path rejectedFile;
+	private final List<Entry> pending = new ArrayList<>();
+	private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+
+	// Number of pending writes, read without waiting on the journal, such as
+	// by the JavaFX thread while a write is being appended
+	private final AtomicInteger pendingCount = new AtomicInteger();
+
+	// Number of writes within the rejected file
+	private final AtomicInteger rejectedCount = new AtomicInteger();
+
+	// Guards forcing the file to disk, separate from appending so writes can
+	// be appended while another thread waits on the disk
+	private final Object syncLock = new Object();
+
+	// Guards appending to the rejected file
+	private final Object rejectLock = new Object();
+
+	private FileChannel channel;
+	private volatile long writtenPosition = 0;
+	private long syncedPosition = 0;
+
+	/**
+	 * Opens the journal stored within the file, reading back any writes that
+	 * are still pending. If the file cannot be opened, writes are kept only
+	 * in memory and sync() always fails. Rejected writes are stored beside
+	 * it, ex: pending-writes.journal.rejected.
+	 * 
+	 * @param file The file the journal is stored in
+	 */
+	public WriteJournal(Path file) {
+		this.file = file;
+		this.rejectedFile = file
+				.resolveSibling(file.getFileName() + ".rejected");
+		try {
+			List<Entry> rejected = new ArrayList<>();
+			read(rejectedFile, rejected);
+			rejectedCount.set(rejected.size());
+		} catch (IOException e) {
+			System.err.println("Unable to read rejected writes "
+					+ rejectedFile + ": " + e.getMessage());
+		}
+
+		try {
+			long validLength = read(file, pending);
+			channel = FileChannel.open(file, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE);
+
+			// Removing any write that was only partially appended
+			channel.truncate(validLength);
+			channel.position(validLength);
+			writtenPosition = syncedPosition = validLength;
+		} catch (IOException e) {
+			System.err.println("Unable to open write journal " + file + ": "
+					+ e.getMessage());
+		}
+		pendingCount.set(pending.size());
+
+		if (!pending.isEmpty())
+			System.err.println(pending.size() + " pending writes in " + file);
+		if (rejectedCount.get() > 0)
+			System.err.println(rejectedCount.get() + " rejected writes in "
+					+ rejectedFile);
+	}
+
+	/**
+	 * Appends the write to the end of the journal. The write is not durable
+	 * until sync() has been called with the returned position.
+	 * 
+	 * @param entry The write to append
+	 * @return The position the file must be synced to, or -1 if the write
+	 *         could not be appended.
+	 */
+	public long append(Entry entry) {
+		int size;
+		long position;
+		synchronized (this) {
+			if (channel == null)
+				return -1;
+
+			try {
+				channel.write(ByteBuffer.wrap(serialize(entry)));
+				position = writtenPosition = channel.position();
+			} catch (IOException e) {
+				System.err.println("Unable to append to write journal: "
+						+ e.getMessage());
+				return -1;
+			}
+			pending.add(entry);
+			size = pending.size();
+			pendingCount.set(size);
+		}
+		notifyListeners(size);
+		return position;
+	}
+
+	/**
+	 * Forces the journal to disk up to at least the given position. If
+	 * another thread has already forced the journal past the position, the
+	 * disk is not touched again.
+	 * 
+	 * @param position The position returned by append()
+	 * @return True if the journal is on disk up to the position; otherwise
+	 *         false is returned.
+	 */
+	public boolean sync(long position) {
+		if (position < 0)
+			return false;
+
+		synchronized (syncLock) {
+			if (syncedPosition >= position)
+				return true;
+
+			try {
+				// Everything appended so far is covered by this force
+				long target = writtenPosition;
+				channel.force(false);
+				syncedPosition = target;
+				return true;
+			} catch (IOException e) {
+				System.err.println("Unable to sync write journal: "
+						+ e.getMessage());
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * @return The pending writes, in the order they were appended
+	 */
+	public synchronized List<Entry> pending() {
+		return new ArrayList<>(pending);
+	}
+
+	/**
+	 * @return True if there are no pending writes
+	 */
+	public boolean isEmpty() {
+		return pendingCount.get() == 0;
+	}
+
+	/**
+	 * @return The number of pending writes
+	 */
+	public int size() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * @return The number of writes moved to the rejected file
+	 */
+	public int rejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return The file the rejected writes are stored in
+	 */
+	public Path getRejectedFile() {
+		return rejectedFile;
+	}
+
+	/**
+	 * Appends a write the database rejected to the rejected file and forces
+	 * it to disk. The write must then be removed from the journal with
+	 * removeFirst(), as with a replayed write.
+	 * 
+	 * @param entry The rejected write
+	 * @return True if the write is stored within the rejected file; otherwise
+	 *         false is returned and the write must be kept in the journal.
+	 */
+	public boolean reject(Entry entry) {
+		synchronized (rejectLock) {
+			try (FileChannel out = FileChannel.open(rejectedFile,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND)) {
+				out.write(ByteBuffer.wrap(serialize(entry)));
+				out.force(false);
+			} catch (IOException e) {
+				System.err.println("Unable to store rejected write: "
+						+ e.getMessage());
+				return false;
+			}
+		}
+		rejectedCount.incrementAndGet();
+		notifyListeners(pendingCount.get());
+		return true;
+	}
+
+	/**
+	 * Removes the first writes from the journal once they have been
+	 * replayed. The remaining writes are written to a new file which then
+	 * replaces the journal, so a crash never leaves a partial journal.
+	 * 
+	 * @param count The number of writes to remove
+	 */
+	public void removeFirst(int count) {
+		if (count <= 0)
+			return;
+
+		int size;
+		synchronized (this) {
+			pending.subList(0, Math.min(count, pending.size())).clear();
+			size = pending.size();
+			pendingCount.set(size);
+
+			synchronized (syncLock) {
+				try {
+					rewrite();
+				} catch (IOException e) {
+					System.err.println("Unable to rewrite write journal: "
+							+ e.getMessage());
+				}
+			}
+		}
+		notifyListeners(size);
+	}
+
+	/**
+	 * Adds a listener that is called with the number of pending writes each
+	 * time a write is appended, removed or rejected.
+	 * 
+	 * @param listener Receives the number of pending writes
+	 */
+	public void addListener(IntConsumer listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Closes the journal file. Pending writes remain within the file.
+	 */
+	public synchronized void close() {
+		if (channel == null)
+			return;
+
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.err.println("Unable to close write journal: "
+					+ e.getMessage());
+		}
+		channel = null;
+	}
+
+	/**
+	 * Writes the pending writes to a temporary file and replaces the journal
+	 * with it. Called while holding both locks.
+	 * 
+	 * @throws IOException If the new journal could not be written
+	 */
+	private void rewrite() throws IOException {
+		if (channel == null)
+			return;
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (Entry entry : pending)
+				out.write(ByteBuffer.wrap(serialize(entry)));
+			out.force(false);
+		}
+
+		channel.close();
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(file, StandardOpenOption.WRITE);
+		channel.position(channel.size());
+		writtenPosition = syncedPosition = channel.size();
+	}
+
+	/**
+	 * Reads the writes stored within a file. Reading stops at the first write
+	 * that was only partially appended.
+	 * 
+	 * @param file    The journal or rejected file
+	 * @param entries Receives the writes, in the order they were appended
+	 * @return The length of the file containing complete writes
+	 * @throws IOException If the file exists but could not be read
+	 */
+	private static long read(Path file, List<Entry> entries)
+			throws IOException {
+		if (!Files.exists(file))
+			return 0;
+
+		byte[] contents = Files.readAllBytes(file);
+		DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(contents));
+
+		long validLength = 0;
+		while (in.available() >= Integer.BYTES) {
+			int length = in.readInt();
+			if (length < 0 || length > in.available())
+				break;
+
+			byte[] record = new byte[length];
+			in.readFully(record);
+			try {
+				entries.add(deserialize(record));
+			} catch (IOException | ClassNotFoundException
+					| ClassCastException e) {
+				break;
+			}
+			validLength += Integer.BYTES + length;
+		}
+
+		if (validLength < contents.length)
+			System.err.println("Ignoring " + (contents.length - validLength)
+					+ " bytes of a partial write in " + file);
+		return validLength;
+	}
+
+	/**
+	 * @param entry The write to store
+	 * @return The write as a length prefixed record
+	 * @throws IOException If the write could not be serialized
+	 */
+	private static byte[] serialize(Entry entry) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(entry);
+		}
+		byte[] record = bytes.toByteArray();
+		return ByteBuffer.allocate(Integer.BYTES + record.length)
+				.putInt(record.length).put(record).array();
+	}
+
+	/**
+	 * @param record The stored write, without its length prefix
+	 * @return The write
+	 * @throws IOException            If the record is not a valid write
+	 * @throws ClassNotFoundException If the record is not a valid write
+	 */
+	private static Entry deserialize(byte[] record)
+			throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(record))) {
+			return (Entry) in.readObject();
+		}
+	}
+
+	/**
+	 * @param size The number of pending writes
+	 */
+	private void notifyListeners(int size) {
+		for (IntConsumer listener : listeners)
+			listener.accept(size);
+	}
+}
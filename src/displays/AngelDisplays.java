@@ -18,7 +18,7 @@ import controllers.Angel.HoldController;
 import controllers.Angel.RequestController;
 import controllers.Angel.SearchDisplayController;
 import controllers.Angel.StatusSelectController;
-import database.DatabaseController;
+import database.AngelRepository;
 
 public class AngelDisplays {
 	// Display the main menu when the application first start ups
@@ -34,37 +34,37 @@ public class AngelDisplays {
 	// Display to create and add a new angel to the database
 	public static final Display ADD_DISPLAY = new Display(
 			"resources/fxml/Angel/AddAngel.fxml",
-			new AddController(DatabaseController.getInstance()));
+			new AddController(AngelRepository.getInstance()));
 
 	// Display where the user can enter an angel id and select desired angel
 	public static final Display ANGEL_SELECTION = new Display(
 			"resources/fxml/Angel/AngelSelection.fxml", 
-			new AngelSelectionController(DatabaseController.getInstance()));
+			new AngelSelectionController(AngelRepository.getInstance()));
 
 	// Display where the user can change the status of the angel
 	public static final Display ANGEL_STATUS = new Display(
 			"resources/fxml/Angel/AngelStatus.fxml",
-			new StatusSelectController(DatabaseController.getInstance()));
+			new StatusSelectController(AngelRepository.getInstance()));
 
 	// Displays where the user adds the items holding the angel
 	public static final Display HOLD_DISPLAY = new Display(
 			"resources/fxml/Angel/HoldDisplay.fxml",
-			new HoldController(DatabaseController.getInstance()));
+			new HoldController(AngelRepository.getInstance()));
 
 	// Displays where the user can request angels for distribution
 	public static final Display REQUEST_DISPLAY = new Display(
 			"resources/fxml/Angel/RequestDisplay.fxml",
-			new RequestController(DatabaseController.getInstance()));
+			new RequestController(AngelRepository.getInstance()));
 
 	// Displays where the user can export the database
 	public static final Display EXPORT_DISPLAY = new Display(
 			"resources/fxml/Angel/ExportDisplay.fxml",
-			new ExportController(DatabaseController.getInstance()));
+			new ExportController(AngelRepository.getInstance()));
 
 	// Displays where the user can search the database
 	public static final Display SEARCH_DISPLAY = new Display(
 			"resources/fxml/Angel/SearchDisplay.fxml",
-			new SearchDisplayController(DatabaseController.getInstance()));
+			new SearchDisplayController(AngelRepository.getInstance()));
 
 	// Displays where the user can see all information of a given angel
 	public static final Display ANGEL_INFO_DISPLAY = new Display(
@@ -1,5 +1,9 @@
 package main;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 import angels.Angel;
 import angels.Attribute;
 import angels.Status;
@@ -13,42 +17,121 @@ import controllers.Angel.HoldController;
 import controllers.Angel.RequestController;
 import controllers.Angel.SearchDisplayController;
 import controllers.Angel.StatusSelectController;
+import database.AngelRepository;
+import database.CircuitBreaker;
 import database.DBCollection;
 import database.Database;
 import database.DatabaseController;
+import database.InMemoryAngelRepository;
+import database.QueryMetrics;
+import database.ResiliencePolicy;
+import database.WriteJournal;
 import displays.AngelDisplays;
 import displays.DisplayManager;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 public class FWAngelDistribution extends Application {
 
 	private static final int TEMP_SIZE = 800;
+	private static final String TITLE = "FW Angel Distribution";
 
 	private static final String DB_NAME = "FW_Distribution";
-	private static DatabaseController dbController;
+	private static AngelRepository repository;
+	private static DatabaseController dbController; // Null when in memory
 
 	public static void main(String[] args) {
-		String user = System.getenv("ArangoDB_user");
-		String password = System.getenv("ArangoDB_password");;
+		// Running without a database, ex: for load testing, when requested.
+		// The angels are generated as nothing is kept between runs.
+		if (Boolean.parseBoolean(System.getenv("FW_in_memory"))) {
+			repository = new InMemoryAngelRepository();
+			AngelRepository.setInstance(repository);
+			populateDatabase();
+		} else {
+			dbController = createDatabaseController();
+			repository = dbController;
 
-		Database db = new Database(DB_NAME, user, password);
-		dbController = new DatabaseController(db);
-		dbController.createCollection(DBCollection.ANGELS);
+			// Uncomment if you want to generate angels within the angels
+			// database.
+			//populateDatabase();
+		}
 
-		// Uncomment if you want to generate angels within the angels database.
-		//populateDatabase();
-		
 		launch();
 	}
 
+	/**
+	 * Connects to the ArangoDB database using the settings from the
+	 * environment variables and prepares the angels collection.
+	 * 
+	 * @return The controller of the database
+	 */
+	private static DatabaseController createDatabaseController() {
+		String user = System.getenv("ArangoDB_user");
+		String password = System.getenv("ArangoDB_password");
+
+		// Connection pool settings, defaults are used when not provided
+		int maxConnections = getEnvInt("ArangoDB_max_connections",
+				Database.DEFAULT_MAX_CONNECTIONS);
+		long connectionTtl = getEnvInt("ArangoDB_connection_ttl",
+				(int) Database.DEFAULT_CONNECTION_TTL);
+		int timeout = getEnvInt("ArangoDB_timeout", Database.DEFAULT_TIMEOUT);
+
+		// Retry settings, defaults are used when not provided
+		ResiliencePolicy defaults = ResiliencePolicy.DEFAULT;
+		ResiliencePolicy policy = new ResiliencePolicy(
+				getEnvInt("ArangoDB_operation_deadline",
+						(int) defaults.getOperationDeadline()),
+				getEnvInt("ArangoDB_max_retries", defaults.getMaxRetries()),
+				defaults.getInitialBackoff(), defaults.getMaxBackoff(),
+				defaults.getFailureThreshold(), defaults.getOpenDuration());
+
+		Database db = new Database(DB_NAME, user, password, maxConnections,
+				connectionTtl, timeout, policy);
+
+		// Calls slower than the threshold are written to the slow query log
+		QueryMetrics metrics = new QueryMetrics(
+				getEnvInt("ArangoDB_slow_query_ms",
+						(int) DatabaseController.DEFAULT_SLOW_QUERY_MILLIS),
+				Paths.get(DatabaseController.DEFAULT_SLOW_QUERY_LOG));
+
+		// Writes made while the database cannot be reached are kept here
+		WriteJournal journal = new WriteJournal(
+				Paths.get(DatabaseController.DEFAULT_JOURNAL));
+		DatabaseController controller = new DatabaseController(db, metrics,
+				journal);
+		controller.createCollection(DBCollection.ANGELS);
+		controller.addMissingIDParts(DBCollection.ANGELS);
+		controller.lowerCaseGenders(DBCollection.ANGELS);
+		controller.addMissingUpdateStamps(DBCollection.ANGELS);
+		controller.ensureIndexes(DBCollection.ANGELS);
+		controller.createCollection(DBCollection.DELETED_ANGELS);
+		controller.ensureIndexes(DBCollection.DELETED_ANGELS);
+		controller.ensureSearchView(DBCollection.ANGELS);
+
+		// Keeps a local copy of the angels current with the other stations
+		controller.startDeltaSync(getEnvInt("ArangoDB_sync_interval_ms",
+				(int) DatabaseController.DEFAULT_SYNC_INTERVAL));
+		return controller;
+	}
+
 	@Override
 	public void start(Stage stage) throws Exception {
 		stage.setWidth(TEMP_SIZE);
 		stage.setHeight(TEMP_SIZE);
 		//stage.setMaximized(true);
 
+		// Showing when the database cannot be reached, and how many writes
+		// are waiting for it, without a Popup
+		updateTitle(stage);
+		if (dbController != null) {
+			dbController.getCircuitBreaker().addListener(
+					state -> Platform.runLater(() -> updateTitle(stage)));
+			dbController.getJournal().addListener(
+					pending -> Platform.runLater(() -> updateTitle(stage)));
+		}
+
 		// Creating the display manager to deal with switching displays
 		new DisplayManager(stage);
 		
@@ -57,10 +140,61 @@ public class FWAngelDistribution extends Application {
 		stage.setScene(new Scene(DisplayManager.getMainDisplay()));
 		stage.show();
 		stage.setOnCloseRequest(e -> {
-			dbController.close();
+			repository.close();
 		}); // Close connection
 	}
 
+	/**
+	 * Sets the title of the window to show whether the database can be
+	 * reached, the number of writes waiting to be sent to it and the number
+	 * it rejected.
+	 * 
+	 * @param stage The main window
+	 */
+	private static void updateTitle(Stage stage) {
+		String title = TITLE;
+		if (dbController == null) {
+			stage.setTitle(title + " - In memory, nothing is saved");
+			return;
+		}
+
+		if (dbController.getCircuitBreaker()
+				.getState() != CircuitBreaker.State.CLOSED)
+			title += " - Database unavailable, retrying";
+
+		int pending = dbController.getJournal().size();
+		if (pending > 0)
+			title += " - " + pending + " writes pending";
+
+		int rejected = dbController.getJournal().rejectedCount();
+		if (rejected > 0)
+			title += " - " + rejected + " writes rejected, see "
+					+ dbController.getJournal().getRejectedFile()
+							.getFileName();
+		stage.setTitle(title);
+	}
+
+	/**
+	 * Reads an integer value from the environment variables.
+	 * 
+	 * @param name         The name of the environment variable
+	 * @param defaultValue The value to use if the variable is missing or is
+	 *                     not a number
+	 * @return The integer value of the environment variable
+	 */
+	private static int getEnvInt(String name, int defaultValue) {
+		String value = System.getenv(name);
+		if (value == null)
+			return defaultValue;
+
+		try {
+			return Integer.valueOf(value.trim());
+		} catch (NumberFormatException nfe) {
+			System.err.println("Invalid value for '" + name + "': " + value);
+			return defaultValue;
+		}
+	}
+
 	/**
 	 * Used to populate the database with 10 angels
 	 * 
@@ -96,6 +230,7 @@ public class FWAngelDistribution extends Application {
 				"headphones", "lol dolls", "puzzles", "baseball bat",
 				"dodgeball", "soccer ball" };
 
+		List<Angel> angels = new ArrayList<>();
 		for (int angelNum = 1; angelNum <= 250; angelNum++) {
 			for (int charIndex = 0; charIndex < Math.random() * 6
 					+ 1; ++charIndex) {
@@ -151,10 +286,12 @@ public class FWAngelDistribution extends Application {
 				angel.addAttribute(Attribute.MISSING, new String[0]);
 				angel.addAttribute(Attribute.LOCATION, "Family Resource");
 
-				// If the angel was added reset the inputs and indicate success
-				dbController.insertAngel(angel, DBCollection.ANGELS);
+				angels.add(angel);
 			}
 		}
+
+		// All the generated angels are added using as few requests as possible
+		repository.insertAll(angels);
 	}
 
 }